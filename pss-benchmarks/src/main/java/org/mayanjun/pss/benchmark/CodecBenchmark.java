@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.mayanjun.pss.payload.Payload;
+import org.mayanjun.pss.payload.PayloadDescriptor;
+import org.mayanjun.pss.payload.PayloadView;
+import org.mayanjun.pss.payload.Payloads;
+import org.mayanjun.pss.util.JSON;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialize and deserialize one payload of each shape, dense and sparse, against Jackson through
+ * {@linkplain JSON#mapper()} as a baseline. Run with <code>-prof gc</code> to get the allocation rates.
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({Fixtures.SMALL, Fixtures.MEDIUM, Fixtures.WIDE})
+    public String shape;
+
+    @Param({"dense", "sparse"})
+    public String density;
+
+    private PayloadDescriptor descriptor;
+
+    private Object payload;
+
+    private Class<?> payloadClass;
+
+    private byte serialized[];
+
+    private ByteBuffer buffer;
+
+    /**
+     * The serialized payload, wrapped once so the view benchmark doesn't measure the wrapping
+     */
+    private ByteBuffer serializedBuffer;
+
+    private PayloadView view;
+
+    private ObjectMapper mapper;
+
+    private byte json[];
+
+    @Setup
+    public void setup() throws Exception {
+        descriptor = Fixtures.descriptor(shape);
+        payload = Fixtures.payload(shape, "sparse".equals(density));
+        payloadClass = Fixtures.payloadClass(shape);
+        serialized = Payloads.serialize(descriptor, payload);
+        buffer = ByteBuffer.allocate(serialized.length);
+        serializedBuffer = ByteBuffer.wrap(serialized);
+        view = new PayloadView(descriptor);
+        mapper = JSON.mapper();
+        json = mapper.writeValueAsBytes(payload);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return Payloads.serialize(descriptor, payload);
+    }
+
+    @Benchmark
+    public ByteBuffer serializeToBuffer() throws Exception {
+        buffer.clear();
+        Payloads.serialize(descriptor, payload, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public int serializedSize() throws Exception {
+        return Payloads.serializedSize(descriptor, payload);
+    }
+
+    @Benchmark
+    public Payload deserialize() throws Exception {
+        return Payloads.deserialize(descriptor, serialized);
+    }
+
+    @Benchmark
+    public Object deserializeObject() throws Exception {
+        return Payloads.deserialize(descriptor, serialized, payloadClass);
+    }
+
+    @Benchmark
+    public void view(Blackhole blackhole) {
+        view.wrap(serializedBuffer, 0);
+        for (int i = 0; i < view.fieldCount(); i++) {
+            blackhole.consume(view.get(i));
+        }
+    }
+
+    @Benchmark
+    public byte[] jacksonSerialize() throws Exception {
+        return mapper.writeValueAsBytes(payload);
+    }
+
+    @Benchmark
+    public Object jacksonDeserialize() throws Exception {
+        return mapper.readValue(json, payloadClass);
+    }
+}
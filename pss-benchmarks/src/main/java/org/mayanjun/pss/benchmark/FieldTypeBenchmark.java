@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.benchmark;
+
+import org.mayanjun.pss.payload.FieldDescriptor;
+import org.mayanjun.pss.payload.FieldType;
+import org.mayanjun.pss.payload.Payload;
+import org.mayanjun.pss.payload.PayloadDescriptor;
+import org.mayanjun.pss.payload.PayloadView;
+import org.mayanjun.pss.payload.Payloads;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of each {@linkplain FieldType}: a payload of 8 fields of the same type is serialized, deserialized
+ * and read through a {@linkplain PayloadView}.
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldTypeBenchmark {
+
+    private static final int FIELDS = 8;
+
+    @Param({"INT8", "UINT8", "INT16", "UINT16", "INT32", "UINT32", "INT64", "DATE", "FLOAT", "DOUBLE", "BOOL",
+            "STRING", "BYTES", "VARINT32", "UVARINT32", "ZIGZAG32", "VARINT64", "UVARINT64", "ZIGZAG64"})
+    public FieldType type;
+
+    private PayloadDescriptor descriptor;
+
+    private Map<String, Object> payload;
+
+    private byte serialized[];
+
+    private ByteBuffer buffer;
+
+    private PayloadView view;
+
+    @Setup
+    public void setup() throws Exception {
+        descriptor = new PayloadDescriptor(100);
+        payload = new HashMap<String, Object>();
+        for (int i = 0; i < FIELDS; i++) {
+            descriptor.addFieldDescriptor(new FieldDescriptor("v" + i, type));
+            payload.put("v" + i, sample(type, i));
+        }
+        serialized = Payloads.serialize(descriptor, payload);
+        buffer = ByteBuffer.allocate(serialized.length);
+        view = new PayloadView(descriptor).wrap(ByteBuffer.wrap(serialized));
+    }
+
+    private static Object sample(FieldType type, int i) {
+        switch (type) {
+            case INT8:
+            case UINT8:
+                return (byte) (10 + i);
+            case INT16:
+            case UINT16:
+                return (short) (1000 + i);
+            case INT32:
+            case UINT32:
+            case VARINT32:
+            case UVARINT32:
+                return 100000 + i;
+            case ZIGZAG32:
+                return -100000 - i;
+            case INT64:
+            case VARINT64:
+            case UVARINT64:
+                return 10000000000L + i;
+            case ZIGZAG64:
+                return -10000000000L - i;
+            case DATE:
+                return new Date(1600000000000L + i);
+            case FLOAT:
+                return 1.5f + i;
+            case DOUBLE:
+                return 2.25 + i;
+            case BOOL:
+                return i % 2 == 0;
+            case STRING:
+                return "value-" + i;
+            default:
+                return new byte[] {1, 2, 3, 4, 5, 6, 7, (byte) i};
+        }
+    }
+
+    @Benchmark
+    public ByteBuffer serialize() throws Exception {
+        buffer.clear();
+        Payloads.serialize(descriptor, payload, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public Payload deserialize() throws Exception {
+        return Payloads.deserialize(descriptor, serialized);
+    }
+
+    @Benchmark
+    public Object viewLast() {
+        return view.get(FIELDS - 1);
+    }
+}
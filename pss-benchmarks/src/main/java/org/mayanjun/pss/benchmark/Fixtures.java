@@ -0,0 +1,300 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.benchmark;
+
+import org.mayanjun.pss.payload.FieldDescriptor;
+import org.mayanjun.pss.payload.FieldType;
+import org.mayanjun.pss.payload.PayloadDescriptor;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Descriptors and payloads shared by the benchmarks:
+ * <ul>
+ *     <li>small: 4 fields, {@linkplain SmallEvent}</li>
+ *     <li>medium: 12 fields of most fixed types, {@linkplain MediumEvent}</li>
+ *     <li>wide: 64 fields, a map payload</li>
+ * </ul>
+ * A dense payload has every field set, a sparse one leaves about three fields out of four null.
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public final class Fixtures {
+
+    public static final String SMALL = "small";
+    public static final String MEDIUM = "medium";
+    public static final String WIDE = "wide";
+
+    public static final int WIDE_FIELDS = 64;
+
+    private static final FieldType WIDE_TYPES[] = {FieldType.INT64, FieldType.INT32, FieldType.DOUBLE, FieldType.STRING};
+
+    private Fixtures() {
+    }
+
+    public static PayloadDescriptor descriptor(String shape) {
+        if (SMALL.equals(shape)) {
+            PayloadDescriptor pd = new PayloadDescriptor(1);
+            pd.addFieldDescriptor(new FieldDescriptor("id", FieldType.INT64));
+            pd.addFieldDescriptor(new FieldDescriptor("type", FieldType.INT32));
+            pd.addFieldDescriptor(new FieldDescriptor("name", FieldType.STRING));
+            pd.addFieldDescriptor(new FieldDescriptor("ok", FieldType.BOOL));
+            return pd;
+        }
+        if (MEDIUM.equals(shape)) {
+            PayloadDescriptor pd = new PayloadDescriptor(2);
+            pd.addFieldDescriptor(new FieldDescriptor("id", FieldType.INT64));
+            pd.addFieldDescriptor(new FieldDescriptor("count", FieldType.INT32));
+            pd.addFieldDescriptor(new FieldDescriptor("port", FieldType.UINT16));
+            pd.addFieldDescriptor(new FieldDescriptor("level", FieldType.INT8));
+            pd.addFieldDescriptor(new FieldDescriptor("latency", FieldType.DOUBLE));
+            pd.addFieldDescriptor(new FieldDescriptor("ratio", FieldType.FLOAT));
+            pd.addFieldDescriptor(new FieldDescriptor("success", FieldType.BOOL));
+            pd.addFieldDescriptor(new FieldDescriptor("time", FieldType.DATE));
+            pd.addFieldDescriptor(new FieldDescriptor("host", FieldType.STRING));
+            pd.addFieldDescriptor(new FieldDescriptor("path", FieldType.STRING));
+            pd.addFieldDescriptor(new FieldDescriptor("agent", FieldType.STRING));
+            pd.addFieldDescriptor(new FieldDescriptor("trace", FieldType.BYTES));
+            return pd;
+        }
+        if (WIDE.equals(shape)) {
+            PayloadDescriptor pd = new PayloadDescriptor(3);
+            for (int i = 0; i < WIDE_FIELDS; i++) {
+                pd.addFieldDescriptor(new FieldDescriptor("f" + i, WIDE_TYPES[i % WIDE_TYPES.length]));
+            }
+            return pd;
+        }
+        throw new IllegalArgumentException("Unknown shape: " + shape);
+    }
+
+    /**
+     * @param shape small, medium or wide
+     * @param sparse true to leave most fields null
+     * @return payload of the descriptor of the shape
+     */
+    public static Object payload(String shape, boolean sparse) {
+        if (SMALL.equals(shape)) {
+            SmallEvent event = new SmallEvent();
+            event.setId(1234567890123L);
+            event.setType(7);
+            event.setName(sparse ? null : "checkout");
+            event.setOk(true);
+            return event;
+        }
+        if (MEDIUM.equals(shape)) {
+            MediumEvent event = new MediumEvent();
+            event.setId(1234567890123L);
+            event.setCount(sparse ? null : 42);
+            event.setPort(sparse ? null : 8080);
+            event.setLevel(sparse ? null : (byte) 3);
+            event.setLatency(12.75);
+            event.setRatio(sparse ? null : 0.5f);
+            event.setSuccess(sparse ? null : Boolean.TRUE);
+            event.setTime(new Date(1600000000000L));
+            event.setHost(sparse ? null : "web-17.dc1.example.com");
+            event.setPath("/api/v1/orders/1234567/items");
+            event.setAgent(sparse ? null : "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36");
+            event.setTrace(sparse ? null : new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+            return event;
+        }
+        if (WIDE.equals(shape)) {
+            Map<String, Object> map = new LinkedHashMap<String, Object>();
+            for (int i = 0; i < WIDE_FIELDS; i++) {
+                if (sparse && i % 4 != 0) continue;
+                switch (WIDE_TYPES[i % WIDE_TYPES.length]) {
+                    case INT64:
+                        map.put("f" + i, 1000000000000L + i);
+                        break;
+                    case INT32:
+                        map.put("f" + i, 1000 + i);
+                        break;
+                    case DOUBLE:
+                        map.put("f" + i, i * 1.25);
+                        break;
+                    default:
+                        map.put("f" + i, "value-" + i);
+                        break;
+                }
+            }
+            return map;
+        }
+        throw new IllegalArgumentException("Unknown shape: " + shape);
+    }
+
+    /**
+     * @return class the payloads of the shape are deserialized into
+     */
+    public static Class<?> payloadClass(String shape) {
+        if (SMALL.equals(shape)) return SmallEvent.class;
+        if (MEDIUM.equals(shape)) return MediumEvent.class;
+        return LinkedHashMap.class;
+    }
+
+    public static class SmallEvent {
+
+        private long id;
+        private int type;
+        private String name;
+        private boolean ok;
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        public void setType(int type) {
+            this.type = type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public boolean isOk() {
+            return ok;
+        }
+
+        public void setOk(boolean ok) {
+            this.ok = ok;
+        }
+    }
+
+    public static class MediumEvent {
+
+        private long id;
+        private Integer count;
+        private Integer port;
+        private Byte level;
+        private double latency;
+        private Float ratio;
+        private Boolean success;
+        private Date time;
+        private String host;
+        private String path;
+        private String agent;
+        private byte trace[];
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public Integer getCount() {
+            return count;
+        }
+
+        public void setCount(Integer count) {
+            this.count = count;
+        }
+
+        public Integer getPort() {
+            return port;
+        }
+
+        public void setPort(Integer port) {
+            this.port = port;
+        }
+
+        public Byte getLevel() {
+            return level;
+        }
+
+        public void setLevel(Byte level) {
+            this.level = level;
+        }
+
+        public double getLatency() {
+            return latency;
+        }
+
+        public void setLatency(double latency) {
+            this.latency = latency;
+        }
+
+        public Float getRatio() {
+            return ratio;
+        }
+
+        public void setRatio(Float ratio) {
+            this.ratio = ratio;
+        }
+
+        public Boolean getSuccess() {
+            return success;
+        }
+
+        public void setSuccess(Boolean success) {
+            this.success = success;
+        }
+
+        public Date getTime() {
+            return time;
+        }
+
+        public void setTime(Date time) {
+            this.time = time;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public void setHost(String host) {
+            this.host = host;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public String getAgent() {
+            return agent;
+        }
+
+        public void setAgent(String agent) {
+            this.agent = agent;
+        }
+
+        public byte[] getTrace() {
+            return trace;
+        }
+
+        public void setTrace(byte[] trace) {
+            this.trace = trace;
+        }
+    }
+}
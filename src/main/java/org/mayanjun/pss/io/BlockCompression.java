@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.io;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression of the blocks written by {@linkplain BlockPayloadWriter}. The id is stored in the header of every
+ * block, a block that doesn't shrink is stored with {@linkplain #NONE}.
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public enum BlockCompression {
+
+    /**
+     * Blocks are stored as is
+     */
+    NONE(0) {
+        @Override
+        int compress(byte[] src, int length, byte[] dst) {
+            return -1;
+        }
+
+        @Override
+        void decompress(byte[] src, int length, byte[] dst, int rawLength) throws IOException {
+            if (length != rawLength) throw new IOException("Corrupt block: " + length + " bytes stored, " + rawLength + " expected");
+            System.arraycopy(src, 0, dst, 0, length);
+        }
+    },
+
+    /**
+     * Deflate of <code>java.util.zip</code> in the zlib format, the better ratio
+     */
+    DEFLATE(1) {
+        @Override
+        int compress(byte[] src, int length, byte[] dst) {
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+            try {
+                deflater.setInput(src, 0, length);
+                deflater.finish();
+                int n = 0;
+                while (!deflater.finished() && n < length) {
+                    n += deflater.deflate(dst, n, dst.length - n);
+                }
+                return deflater.finished() && n < length ? n : -1;
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        void decompress(byte[] src, int length, byte[] dst, int rawLength) throws IOException {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(src, 0, length);
+                int n = 0;
+                while (n < rawLength && !inflater.finished()) {
+                    int r = inflater.inflate(dst, n, rawLength - n);
+                    if (r == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                    n += r;
+                }
+                if (n != rawLength || !inflater.finished()) throw new IOException("Corrupt deflate block");
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt deflate block", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    },
+
+    /**
+     * Byte oriented LZ77 in pure Java, much faster than {@linkplain #DEFLATE} with a lower ratio
+     */
+    LZ(2) {
+        @Override
+        int compress(byte[] src, int length, byte[] dst) {
+            int n = LzBlockCodec.compress(src, length, dst);
+            return n < length ? n : -1;
+        }
+
+        @Override
+        void decompress(byte[] src, int length, byte[] dst, int rawLength) throws IOException {
+            LzBlockCodec.decompress(src, length, dst, rawLength);
+        }
+    };
+
+    private final byte id;
+
+    BlockCompression(int id) {
+        this.id = (byte) id;
+    }
+
+    public byte getId() {
+        return id;
+    }
+
+    /**
+     * @param id stored id
+     * @return compression, null if the id is unknown
+     */
+    public static BlockCompression forId(int id) {
+        for (BlockCompression compression : values()) {
+            if (compression.id == id) return compression;
+        }
+        return null;
+    }
+
+    /**
+     * @param length raw length
+     * @return size of the <code>dst</code> array required by {@linkplain #compress(byte[], int, byte[])}
+     */
+    static int maxCompressedLength(int length) {
+        return LzBlockCodec.maxCompressedLength(length);
+    }
+
+    /**
+     * Compress the first bytes of src into dst
+     * @param src raw bytes
+     * @param length raw length
+     * @param dst output of at least {@linkplain #maxCompressedLength(int)} bytes
+     * @return compressed length, -1 if it isn't smaller than the raw length
+     */
+    abstract int compress(byte src[], int length, byte dst[]);
+
+    /**
+     * @param src compressed bytes
+     * @param length compressed length
+     * @param dst output of at least rawLength bytes
+     * @param rawLength raw length
+     * @throws IOException if the block is corrupt
+     */
+    abstract void decompress(byte src[], int length, byte dst[], int rawLength) throws IOException;
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.io;
+
+import org.mayanjun.pss.DeserializeException;
+import org.mayanjun.pss.payload.Payload;
+import org.mayanjun.pss.payload.PayloadDescriptor;
+import org.mayanjun.pss.payload.PayloadRegistry;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Reads a file written by {@linkplain BlockPayloadWriter}. The block index is loaded from the end of the file,
+ * or rebuilt by a scan of the block headers when the writer wasn't closed, so any block is read and decompressed
+ * on its own. A decompressed block holds the length-prefixed frames of its records, as written by
+ * {@linkplain PayloadStreamWriter}, and can be passed to
+ * {@linkplain org.mayanjun.pss.payload.PayloadScanner#scanFrames(ByteBuffer, org.mayanjun.pss.payload.PayloadScanner.MatchHandler)}.
+ * <p>The file is only read with positional reads, so a reader is thread safe.</p>
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public class BlockPayloadReader implements Closeable {
+
+    private interface BlockTask<T> {
+        T run(int block) throws IOException, DeserializeException;
+    }
+
+    private final Path file;
+
+    private final FileChannel channel;
+
+    private final PayloadRegistry registry;
+
+    private final long offsets[];
+
+    private final int rawLengths[];
+
+    /**
+     * Index of the first record of each block, plus the record count
+     */
+    private final long firstRecords[];
+
+    private final int blockCount;
+
+    private BlockPayloadReader(Path file, FileChannel channel, PayloadRegistry registry, long offsets[],
+                               int records[], int rawLengths[], int blockCount) {
+        this.file = file;
+        this.channel = channel;
+        this.registry = registry;
+        this.offsets = offsets;
+        this.rawLengths = rawLengths;
+        this.blockCount = blockCount;
+        this.firstRecords = new long[blockCount + 1];
+        for (int i = 0; i < blockCount; i++) {
+            firstRecords[i + 1] = firstRecords[i] + records[i];
+        }
+    }
+
+    public static BlockPayloadReader open(Path file, PayloadDescriptor descriptor) throws IOException {
+        return open(file, new PayloadRegistry(descriptor));
+    }
+
+    /**
+     * Open a block file. A block cut short at the end of the file, left by an interrupted writer, is ignored.
+     * @param file file
+     * @param registry registry used to find the descriptors of the records
+     * @return reader
+     * @throws IOException if the file can't be read or is not a block file
+     */
+    public static BlockPayloadReader open(Path file, PayloadRegistry registry) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < BlockPayloadWriter.HEADER_SIZE) throw new IOException("Not a block file: " + file);
+            ByteBuffer header = read(channel, 0, BlockPayloadWriter.HEADER_SIZE);
+            if (header.getInt() != BlockPayloadWriter.MAGIC) throw new IOException("Not a block file: " + file);
+            short version = header.getShort();
+            if (version != BlockPayloadWriter.VERSION) throw new IOException("Unsupported block file version: " + version);
+
+            int count = -1;
+            long offsets[] = null;
+            int records[] = null;
+            int rawLengths[] = null;
+            if (size >= BlockPayloadWriter.HEADER_SIZE + BlockPayloadWriter.TRAILER_SIZE) {
+                ByteBuffer trailer = read(channel, size - BlockPayloadWriter.TRAILER_SIZE, BlockPayloadWriter.TRAILER_SIZE);
+                int blocks = trailer.getInt();
+                long indexOffset = trailer.getLong();
+                if (trailer.getInt() == BlockPayloadWriter.TRAILER_MAGIC && blocks >= 0
+                        && indexOffset >= BlockPayloadWriter.HEADER_SIZE
+                        && indexOffset + (long) blocks * BlockPayloadWriter.INDEX_ENTRY_SIZE == size - BlockPayloadWriter.TRAILER_SIZE) {
+                    ByteBuffer index = read(channel, indexOffset, blocks * BlockPayloadWriter.INDEX_ENTRY_SIZE);
+                    count = blocks;
+                    offsets = new long[count];
+                    records = new int[count];
+                    rawLengths = new int[count];
+                    for (int i = 0; i < count; i++) {
+                        offsets[i] = index.getLong();
+                        records[i] = index.getInt();
+                        rawLengths[i] = index.getInt();
+                    }
+                }
+            }
+            if (count < 0) {
+                count = 0;
+                offsets = new long[64];
+                records = new int[64];
+                rawLengths = new int[64];
+                long pos = BlockPayloadWriter.HEADER_SIZE;
+                while (pos + BlockPayloadWriter.BLOCK_HEADER_SIZE <= size) {
+                    ByteBuffer blockHeader = read(channel, pos, BlockPayloadWriter.BLOCK_HEADER_SIZE);
+                    BlockCompression compression = BlockCompression.forId(blockHeader.get());
+                    int blockRecords = blockHeader.getInt();
+                    int rawLength = blockHeader.getInt();
+                    int storedLength = blockHeader.getInt();
+                    if (compression == null || blockRecords < 0 || rawLength < 0 || storedLength < 0) break;
+                    if (pos + BlockPayloadWriter.BLOCK_HEADER_SIZE + storedLength > size) break;
+                    if (count == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, count << 1);
+                        records = Arrays.copyOf(records, count << 1);
+                        rawLengths = Arrays.copyOf(rawLengths, count << 1);
+                    }
+                    offsets[count] = pos;
+                    records[count] = blockRecords;
+                    rawLengths[count] = rawLength;
+                    count++;
+                    pos += BlockPayloadWriter.BLOCK_HEADER_SIZE + storedLength;
+                }
+            }
+            return new BlockPayloadReader(file, channel, registry, offsets, records, rawLengths, count);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        } catch (RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public PayloadRegistry getRegistry() {
+        return registry;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * @return number of records of all blocks
+     */
+    public long getRecordCount() {
+        return firstRecords[blockCount];
+    }
+
+    /**
+     * @param block block index
+     * @return number of records of the block
+     */
+    public int getBlockRecordCount(int block) {
+        checkBlock(block);
+        return (int) (firstRecords[block + 1] - firstRecords[block]);
+    }
+
+    /**
+     * @param block block index
+     * @return index of the first record of the block
+     */
+    public long getFirstRecord(int block) {
+        checkBlock(block);
+        return firstRecords[block];
+    }
+
+    /**
+     * @param record record index
+     * @return index of the block holding the record
+     */
+    public int blockOf(long record) {
+        if (record < 0 || record >= getRecordCount()) {
+            throw new IndexOutOfBoundsException("Record index: " + record + ", size: " + getRecordCount());
+        }
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (firstRecords[mid] <= record) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Read and decompress a block
+     * @param block block index
+     * @return new heap buffer holding the frames of the block between its position and limit
+     * @throws IOException if the file can't be read or the block is corrupt
+     */
+    public ByteBuffer block(int block) throws IOException {
+        checkBlock(block);
+        ByteBuffer header = read(channel, offsets[block], BlockPayloadWriter.BLOCK_HEADER_SIZE);
+        BlockCompression compression = BlockCompression.forId(header.get());
+        header.getInt();
+        int rawLength = header.getInt();
+        int storedLength = header.getInt();
+        if (compression == null || rawLength != rawLengths[block] || storedLength < 0) {
+            throw new IOException("Corrupt block header at offset " + offsets[block] + ": " + file);
+        }
+        ByteBuffer stored = read(channel, offsets[block] + BlockPayloadWriter.BLOCK_HEADER_SIZE, storedLength);
+        if (compression == BlockCompression.NONE) {
+            if (storedLength != rawLength) throw new IOException("Corrupt block at offset " + offsets[block] + ": " + file);
+            return stored;
+        }
+        byte raw[] = new byte[rawLength];
+        compression.decompress(stored.array(), storedLength, raw, rawLength);
+        return ByteBuffer.wrap(raw);
+    }
+
+    /**
+     * Decompress all blocks in the common pool
+     * @return the blocks in file order
+     * @throws IOException
+     */
+    public ByteBuffer[] blocks() throws IOException {
+        return blocks(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Decompress all blocks in parallel
+     * @param pool pool running the decompression
+     * @return the blocks in file order
+     * @throws IOException if the file can't be read or a block is corrupt
+     */
+    public ByteBuffer[] blocks(ForkJoinPool pool) throws IOException {
+        try {
+            return parallel(pool, new BlockTask<ByteBuffer>() {
+                @Override
+                public ByteBuffer run(int block) throws IOException {
+                    return block(block);
+                }
+            }).toArray(new ByteBuffer[blockCount]);
+        } catch (DeserializeException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Deserialize the records of a block
+     * @param block block index
+     * @return payloads in file order
+     * @throws IOException if the file can't be read or the block is corrupt
+     * @throws DeserializeException if a record can't be deserialized
+     */
+    public List<Payload> payloads(int block) throws IOException, DeserializeException {
+        ByteBuffer frames = block(block);
+        int count = getBlockRecordCount(block);
+        List<Payload> payloads = new ArrayList<Payload>(count);
+        int limit = frames.limit();
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            int start = nextFrame(frames, pos, limit);
+            pos = start + frames.getInt(start - PayloadStreamWriter.FRAME_HEADER_SIZE);
+            frames.limit(pos).position(start);
+            payloads.add(registry.deserialize(frames));
+            frames.limit(limit);
+        }
+        return payloads;
+    }
+
+    /**
+     * Deserialize all records, blocks are decompressed and deserialized in the common pool
+     * @return payloads in file order
+     * @throws IOException
+     * @throws DeserializeException
+     */
+    public List<Payload> readAll() throws IOException, DeserializeException {
+        return readAll(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Deserialize all records, blocks are decompressed and deserialized in parallel
+     * @param pool pool running the blocks
+     * @return payloads in file order
+     * @throws IOException if the file can't be read or a block is corrupt
+     * @throws DeserializeException if a record can't be deserialized
+     */
+    public List<Payload> readAll(ForkJoinPool pool) throws IOException, DeserializeException {
+        List<List<Payload>> blocks = parallel(pool, new BlockTask<List<Payload>>() {
+            @Override
+            public List<Payload> run(int block) throws IOException, DeserializeException {
+                return payloads(block);
+            }
+        });
+        List<Payload> payloads = new ArrayList<Payload>((int) Math.min(Integer.MAX_VALUE, getRecordCount()));
+        for (List<Payload> block : blocks) {
+            payloads.addAll(block);
+        }
+        return payloads;
+    }
+
+    /**
+     * Deserialize one record. Its whole block is decompressed, iterate over {@linkplain #payloads(int)} to read
+     * many records.
+     * @param record record index
+     * @return payload
+     * @throws IOException if the file can't be read or the block is corrupt
+     * @throws DeserializeException if the record can't be deserialized
+     */
+    public Payload payload(long record) throws IOException, DeserializeException {
+        int block = blockOf(record);
+        ByteBuffer frames = block(block);
+        int limit = frames.limit();
+        int start = nextFrame(frames, 0, limit);
+        for (long i = firstRecords[block]; i < record; i++) {
+            start = nextFrame(frames, start + frames.getInt(start - PayloadStreamWriter.FRAME_HEADER_SIZE), limit);
+        }
+        frames.limit(start + frames.getInt(start - PayloadStreamWriter.FRAME_HEADER_SIZE)).position(start);
+        return registry.deserialize(frames);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * @return offset of the payload of the frame at pos
+     */
+    private int nextFrame(ByteBuffer frames, int pos, int limit) throws DeserializeException {
+        if (pos + PayloadStreamWriter.FRAME_HEADER_SIZE > limit) throw new DeserializeException("Block underflow at offset " + pos);
+        int len = frames.getInt(pos);
+        int start = pos + PayloadStreamWriter.FRAME_HEADER_SIZE;
+        if (len < 4 || len > limit - start) throw new DeserializeException("Malformed frame at offset " + pos);
+        return start;
+    }
+
+    private <T> List<T> parallel(ForkJoinPool pool, final BlockTask<T> task) throws IOException, DeserializeException {
+        List<T> results = new ArrayList<T>(blockCount);
+        if (blockCount < 2 || pool.getParallelism() < 2) {
+            for (int i = 0; i < blockCount; i++) {
+                results.add(task.run(i));
+            }
+            return results;
+        }
+        List<ForkJoinTask<T>> tasks = new ArrayList<ForkJoinTask<T>>(blockCount);
+        for (int i = 0; i < blockCount; i++) {
+            final int block = i;
+            tasks.add(pool.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    return task.run(block);
+                }
+            }));
+        }
+        try {
+            for (ForkJoinTask<T> t : tasks) {
+                results.add(t.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading blocks");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof DeserializeException) throw (DeserializeException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        } finally {
+            for (ForkJoinTask<T> t : tasks) {
+                t.cancel(false);
+            }
+        }
+    }
+
+    private void checkBlock(int block) {
+        if (block < 0 || block >= blockCount) throw new IndexOutOfBoundsException("Block index: " + block + ", size: " + blockCount);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException("Unexpected end of file");
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.io;
+
+import org.mayanjun.pss.SerializeException;
+import org.mayanjun.pss.payload.PayloadCodec;
+import org.mayanjun.pss.payload.PayloadDescriptor;
+import org.mayanjun.pss.payload.Payloads;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes payloads as compressed blocks, read back by {@linkplain BlockPayloadReader}. Records are framed as by
+ * {@linkplain PayloadStreamWriter} and grouped into blocks of about the block size; each block is compressed on
+ * its own so blocks can be decompressed independently and in parallel.
+ * <p>The stream starts with a header (4 bytes magic, 2 bytes version, 1 byte compression, 1 byte reserved).
+ * Every block has a header (1 byte compression, 4 bytes record count, 4 bytes raw length, 4 bytes stored length)
+ * followed by the stored bytes. On {@linkplain #close()} an index of the blocks (8 bytes offset, 4 bytes record
+ * count and 4 bytes raw length per block) is appended, followed by a trailer (4 bytes block count, 8 bytes offset
+ * of the index, 4 bytes magic). A record larger than the block size gets a block of its own.</p>
+ * <p>A writer is not thread safe.</p>
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public class BlockPayloadWriter implements Closeable, Flushable {
+
+    /**
+     * "PSSB"
+     */
+    public static final int MAGIC = 0x50535342;
+
+    /**
+     * "PSSX"
+     */
+    public static final int TRAILER_MAGIC = 0x50535358;
+
+    public static final short VERSION = 1;
+
+    public static final int HEADER_SIZE = 8;
+
+    public static final int BLOCK_HEADER_SIZE = 13;
+
+    static final int INDEX_ENTRY_SIZE = 16;
+
+    static final int TRAILER_SIZE = 16;
+
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    private final OutputStream outputStream;
+
+    private final WritableByteChannel channel;
+
+    private final BlockCompression compression;
+
+    private final int blockSize;
+
+    private ByteBuffer block;
+
+    private int blockRecords;
+
+    private byte stored[] = new byte[0];
+
+    private long offsets[] = new long[64];
+
+    private int records[] = new int[64];
+
+    private int rawLengths[] = new int[64];
+
+    private int blockCount;
+
+    private long recordCount;
+
+    private long bytesWritten;
+
+    private boolean closed;
+
+    public BlockPayloadWriter(OutputStream outputStream, BlockCompression compression) {
+        this(outputStream, compression, DEFAULT_BLOCK_SIZE);
+    }
+
+    public BlockPayloadWriter(OutputStream outputStream, BlockCompression compression, int blockSize) {
+        this(outputStream, null, compression, blockSize);
+    }
+
+    public BlockPayloadWriter(WritableByteChannel channel, BlockCompression compression) {
+        this(channel, compression, DEFAULT_BLOCK_SIZE);
+    }
+
+    public BlockPayloadWriter(WritableByteChannel channel, BlockCompression compression, int blockSize) {
+        this(null, channel, compression, blockSize);
+    }
+
+    /**
+     * Create the file, an existing file is truncated
+     * @param file file
+     * @param compression compression of the blocks
+     * @throws IOException if the file can't be created
+     */
+    public BlockPayloadWriter(Path file, BlockCompression compression) throws IOException {
+        this(file, compression, DEFAULT_BLOCK_SIZE);
+    }
+
+    public BlockPayloadWriter(Path file, BlockCompression compression, int blockSize) throws IOException {
+        this(null, FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), compression, blockSize);
+    }
+
+    private BlockPayloadWriter(OutputStream outputStream, WritableByteChannel channel, BlockCompression compression,
+                               int blockSize) {
+        if (compression == null) throw new IllegalArgumentException("No compression specified");
+        if (blockSize < PayloadStreamWriter.FRAME_HEADER_SIZE) {
+            throw new IllegalArgumentException("Block size too small: " + blockSize);
+        }
+        this.outputStream = outputStream;
+        this.channel = channel;
+        this.compression = compression;
+        this.blockSize = blockSize;
+        this.block = ByteBuffer.allocate(blockSize);
+    }
+
+    /**
+     * Serialize the payload as the next record
+     * @param payloadDescriptor pd
+     * @param payload payload
+     * @return index of the record
+     * @throws SerializeException if the payload can't be serialized, nothing is written in this case
+     * @throws IOException if the underlying stream fails
+     */
+    public long write(PayloadDescriptor payloadDescriptor, Object payload) throws SerializeException, IOException {
+        ensureOpen();
+        if (payload == null) throw new SerializeException("No payload specified");
+        PayloadCodec<?> codec = Payloads.codec(payloadDescriptor, payload.getClass());
+        int size = codec.serializedSize(payload);
+        if (block.remaining() < PayloadStreamWriter.FRAME_HEADER_SIZE + size) {
+            writeBlock();
+            if (block.capacity() < PayloadStreamWriter.FRAME_HEADER_SIZE + size) {
+                grow(PayloadStreamWriter.FRAME_HEADER_SIZE + size);
+            }
+        }
+        int start = block.position();
+        try {
+            block.position(start + PayloadStreamWriter.FRAME_HEADER_SIZE);
+            codec.serialize(payload, block);
+        } catch (SerializeException e) {
+            block.position(start);
+            throw e;
+        }
+        block.putInt(start, size);
+        return recorded();
+    }
+
+    /**
+     * Write an already serialized payload as the next record
+     * @param payload remaining bytes of the buffer, the position is moved to its limit
+     * @return index of the record
+     * @throws IOException if the underlying stream fails
+     */
+    public long writeFrame(ByteBuffer payload) throws IOException {
+        ensureOpen();
+        int len = payload.remaining();
+        if (block.remaining() < PayloadStreamWriter.FRAME_HEADER_SIZE + len) {
+            writeBlock();
+            if (block.capacity() < PayloadStreamWriter.FRAME_HEADER_SIZE + len) {
+                grow(PayloadStreamWriter.FRAME_HEADER_SIZE + len);
+            }
+        }
+        block.putInt(len);
+        block.put(payload);
+        return recorded();
+    }
+
+    public long writeFrame(byte [] payload) throws IOException {
+        return writeFrame(ByteBuffer.wrap(payload));
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public BlockCompression getCompression() {
+        return compression;
+    }
+
+    /**
+     * @return number of records written
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return number of blocks written, the current block is not counted
+     */
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * @return number of bytes written to the underlying stream
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Write the current block, even if it isn't full, and flush the underlying stream
+     * @throws IOException
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        writeBlock();
+        if (outputStream != null) outputStream.flush();
+    }
+
+    /**
+     * Write the current block and the index and close the underlying stream
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        try {
+            writeBlock();
+            writeIndex();
+            if (outputStream != null) outputStream.flush();
+        } finally {
+            closed = true;
+            if (outputStream != null) {
+                outputStream.close();
+            } else {
+                channel.close();
+            }
+        }
+    }
+
+    private long recorded() throws IOException {
+        blockRecords++;
+        long index = recordCount++;
+        // a record larger than the block size was given a block of its own, write it out right away
+        if (block.capacity() > blockSize) writeBlock();
+        return index;
+    }
+
+    private void writeBlock() throws IOException {
+        int rawLength = block.position();
+        if (rawLength == 0) return;
+        writeHeader();
+        if (stored.length < BlockCompression.maxCompressedLength(rawLength)) {
+            stored = new byte[BlockCompression.maxCompressedLength(rawLength)];
+        }
+        BlockCompression blockCompression = compression;
+        int storedLength = compression.compress(block.array(), rawLength, stored);
+        if (storedLength < 0) {
+            blockCompression = BlockCompression.NONE;
+            storedLength = rawLength;
+        }
+        if (blockCount == offsets.length) {
+            offsets = Arrays.copyOf(offsets, blockCount << 1);
+            records = Arrays.copyOf(records, blockCount << 1);
+            rawLengths = Arrays.copyOf(rawLengths, blockCount << 1);
+        }
+        offsets[blockCount] = bytesWritten;
+        records[blockCount] = blockRecords;
+        rawLengths[blockCount] = rawLength;
+
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        header.put(blockCompression.getId()).putInt(blockRecords).putInt(rawLength).putInt(storedLength);
+        output(header.array(), BLOCK_HEADER_SIZE);
+        output(blockCompression == BlockCompression.NONE ? block.array() : stored, storedLength);
+        blockCount++;
+        blockRecords = 0;
+        if (block.capacity() > blockSize) {
+            block = ByteBuffer.allocate(blockSize);
+        } else {
+            block.clear();
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        if (bytesWritten > 0) return;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(VERSION).put(compression.getId()).put((byte) 0);
+        output(header.array(), HEADER_SIZE);
+    }
+
+    private void writeIndex() throws IOException {
+        writeHeader();
+        long indexOffset = bytesWritten;
+        ByteBuffer index = ByteBuffer.allocate(blockCount * INDEX_ENTRY_SIZE + TRAILER_SIZE);
+        for (int i = 0; i < blockCount; i++) {
+            index.putLong(offsets[i]).putInt(records[i]).putInt(rawLengths[i]);
+        }
+        index.putInt(blockCount).putLong(indexOffset).putInt(TRAILER_MAGIC);
+        output(index.array(), index.capacity());
+    }
+
+    private void output(byte bytes[], int length) throws IOException {
+        if (outputStream != null) {
+            outputStream.write(bytes, 0, length);
+        } else {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        bytesWritten += length;
+    }
+
+    /**
+     * Replace the empty block by one large enough for a single oversized record
+     */
+    private void grow(int required) {
+        block = ByteBuffer.allocate(required);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) throw new IOException("Stream closed");
+    }
+}
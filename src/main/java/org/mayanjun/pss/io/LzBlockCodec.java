@@ -0,0 +1,167 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.io;
+
+import java.io.IOException;
+
+/**
+ * LZ77 codec of {@linkplain BlockCompression#LZ}, in the spirit of LZ4. A block is a list of sequences:
+ * a token (4 bits literal length, 4 bits match length minus {@value #MIN_MATCH}), the extension bytes of the
+ * literal length, the literals, a 2 bytes big-endian offset back in the output and the extension bytes of the
+ * match length. A length of 15 in the token is continued by bytes of 255 and a last byte below 255.
+ * The last sequence has no match: it ends the block.
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+final class LzBlockCodec {
+
+    static final int MIN_MATCH = 4;
+
+    private static final int MAX_OFFSET = 0xFFFF;
+
+    private static final int HASH_BITS = 14;
+
+    /**
+     * Literals are skipped faster when no match has been found for a while
+     */
+    private static final int SKIP_SHIFT = 6;
+
+    private LzBlockCodec() {
+    }
+
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    static int compress(byte src[], int length, byte dst[]) {
+        int table[] = new int[1 << HASH_BITS];
+        int anchor = 0;
+        int ip = 0;
+        int op = 0;
+        int limit = length - MIN_MATCH;
+        while (ip <= limit) {
+            int sequence = readInt(src, ip);
+            int hash = (sequence * -1640531535) >>> (32 - HASH_BITS);
+            int ref = table[hash] - 1;
+            table[hash] = ip + 1;
+            if (ref >= 0 && ip - ref <= MAX_OFFSET && readInt(src, ref) == sequence) {
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < length && src[ref + matchLength] == src[ip + matchLength]) {
+                    matchLength++;
+                }
+                op = writeSequence(dst, op, src, anchor, ip - anchor, ip - ref, matchLength);
+                ip += matchLength;
+                anchor = ip;
+            } else {
+                ip += 1 + ((ip - anchor) >>> SKIP_SHIFT);
+            }
+        }
+        return writeSequence(dst, op, src, anchor, length - anchor, 0, 0);
+    }
+
+    static void decompress(byte src[], int length, byte dst[], int rawLength) throws IOException {
+        int ip = 0;
+        int op = 0;
+        try {
+            while (true) {
+                int token = src[ip++] & 0xFF;
+                int literalLength = token >>> 4;
+                if (literalLength == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        literalLength += b;
+                    } while (b == 255);
+                }
+                if (literalLength > length - ip || literalLength > rawLength - op) throw corrupt(ip);
+                System.arraycopy(src, ip, dst, op, literalLength);
+                ip += literalLength;
+                op += literalLength;
+                if (ip == length) break;
+
+                int offset = ((src[ip] & 0xFF) << 8) | (src[ip + 1] & 0xFF);
+                ip += 2;
+                int matchLength = token & 15;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+                if (offset == 0 || offset > op || matchLength > rawLength - op) throw corrupt(ip);
+                int ref = op - offset;
+                if (offset >= matchLength) {
+                    System.arraycopy(dst, ref, dst, op, matchLength);
+                    op += matchLength;
+                } else {
+                    for (int end = op + matchLength; op < end; ) {
+                        dst[op++] = dst[ref++];
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupt LZ block", e);
+        }
+        if (op != rawLength) throw new IOException("Corrupt LZ block: " + op + " bytes decoded, " + rawLength + " expected");
+    }
+
+    private static IOException corrupt(int position) {
+        return new IOException("Corrupt LZ block at offset " + position);
+    }
+
+    private static int writeSequence(byte dst[], int op, byte src[], int literalStart, int literalLength,
+                                     int offset, int matchLength) {
+        int tokenPosition = op++;
+        int token;
+        if (literalLength >= 15) {
+            token = 15 << 4;
+            op = writeLength(dst, op, literalLength - 15);
+        } else {
+            token = literalLength << 4;
+        }
+        System.arraycopy(src, literalStart, dst, op, literalLength);
+        op += literalLength;
+        if (matchLength > 0) {
+            dst[op++] = (byte) (offset >>> 8);
+            dst[op++] = (byte) offset;
+            int length = matchLength - MIN_MATCH;
+            if (length >= 15) {
+                token |= 15;
+                op = writeLength(dst, op, length - 15);
+            } else {
+                token |= length;
+            }
+        }
+        dst[tokenPosition] = (byte) token;
+        return op;
+    }
+
+    private static int writeLength(byte dst[], int op, int length) {
+        while (length >= 255) {
+            dst[op++] = (byte) 255;
+            length -= 255;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+
+    private static int readInt(byte src[], int i) {
+        return (src[i] << 24) | ((src[i + 1] & 0xFF) << 16) | ((src[i + 2] & 0xFF) << 8) | (src[i + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.io;
+
+import org.mayanjun.pss.DeserializeException;
+import org.mayanjun.pss.payload.Payload;
+import org.mayanjun.pss.payload.PayloadDescriptor;
+import org.mayanjun.pss.payload.PayloadRegistry;
+import org.mayanjun.pss.payload.PayloadScanner;
+import org.mayanjun.pss.payload.PayloadView;
+import org.mayanjun.pss.payload.Payloads;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A memory-mapped segment file written by {@linkplain PayloadSegmentWriter}. The file starts with a header
+ * (4 bytes magic, 2 bytes version, 2 bytes reserved) followed by the length-prefixed frames of
+ * {@linkplain PayloadStreamWriter}. The offsets of the frames are kept in a <code>long[]</code>, loaded from the
+ * index sidecar file (the segment file name plus {@value #INDEX_SUFFIX}) or rebuilt by a scan of the segment when
+ * the sidecar is missing or stale, so any record is found in constant time and decoded straight from the mapped
+ * buffer.
+ * <p>The mapped buffer is only read with absolute operations, so {@linkplain #view(int, PayloadView)} and
+ * {@linkplain #payload(int)} may be called from several threads; {@linkplain #view(int)} reuses one view per
+ * descriptor and is not thread safe. A segment is limited to 2 GiB. The mapping is released when the segment
+ * is garbage collected, not on {@linkplain #close()}.</p>
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public class MappedPayloadSegment implements Closeable {
+
+    /**
+     * "PSSG"
+     */
+    public static final int MAGIC = 0x50535347;
+
+    /**
+     * "PSSI"
+     */
+    public static final int INDEX_MAGIC = 0x50535349;
+
+    public static final short VERSION = 1;
+
+    public static final int HEADER_SIZE = 8;
+
+    /**
+     * Magic, version, reserved, segment length and record count
+     */
+    static final int INDEX_HEADER_SIZE = 20;
+
+    public static final String INDEX_SUFFIX = ".idx";
+
+    private final Path file;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private final PayloadRegistry registry;
+
+    private final long offsets[];
+
+    private final int count;
+
+    private final Map<PayloadDescriptor, PayloadView> views = new IdentityHashMap<PayloadDescriptor, PayloadView>();
+
+    private MappedPayloadSegment(Path file, FileChannel channel, MappedByteBuffer buffer, PayloadRegistry registry,
+                                 long offsets[], int count) {
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.registry = registry;
+        this.offsets = offsets;
+        this.count = count;
+    }
+
+    public static MappedPayloadSegment open(Path file, PayloadDescriptor descriptor) throws IOException {
+        return open(file, new PayloadRegistry(descriptor));
+    }
+
+    /**
+     * Map a segment file. A frame cut short at the end of the file, left by an interrupted writer, is ignored.
+     * @param file segment file
+     * @param registry registry used to find the descriptors of the records
+     * @return segment
+     * @throws IOException if the file can't be read, is not a segment, is larger than 2 GiB or has a malformed frame
+     */
+    public static MappedPayloadSegment open(Path file, PayloadRegistry registry) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("Segment larger than 2 GiB: " + file);
+            if (size < HEADER_SIZE) throw new IOException("Not a payload segment: " + file);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC) throw new IOException("Not a payload segment: " + file);
+            short version = buffer.getShort(4);
+            if (version != VERSION) throw new IOException("Unsupported segment version: " + version);
+
+            long offsets[] = readIndex(indexFile(file), size);
+            int count;
+            if (offsets != null) {
+                count = offsets.length;
+            } else {
+                offsets = new long[1024];
+                count = 0;
+                int pos = HEADER_SIZE;
+                while (pos + PayloadStreamWriter.FRAME_HEADER_SIZE <= size) {
+                    int len = buffer.getInt(pos);
+                    if (len < 4) throw new IOException("Malformed frame at offset " + pos + ": " + file);
+                    if ((long) pos + PayloadStreamWriter.FRAME_HEADER_SIZE + len > size) break;
+                    if (count == offsets.length) offsets = Arrays.copyOf(offsets, count << 1);
+                    offsets[count++] = pos;
+                    pos += PayloadStreamWriter.FRAME_HEADER_SIZE + len;
+                }
+            }
+            return new MappedPayloadSegment(file, channel, buffer, registry, offsets, count);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        } catch (RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return number of records
+     */
+    public int size() {
+        return count;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public PayloadRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @param index record index
+     * @return offset of the frame of the record in the file
+     */
+    public long offset(int index) {
+        checkIndex(index);
+        return offsets[index];
+    }
+
+    /**
+     * @param index record index
+     * @return serialized length of the record
+     */
+    public int frameLength(int index) {
+        checkIndex(index);
+        return buffer.getInt((int) offsets[index]);
+    }
+
+    /**
+     * @param index record index
+     * @return id of the payload of the record
+     */
+    public int descriptorId(int index) {
+        return buffer.getInt(payloadOffset(index));
+    }
+
+    /**
+     * @param index record index
+     * @return descriptor of the payload of the record
+     * @throws DeserializeException if its id isn't registered
+     */
+    public PayloadDescriptor descriptor(int index) throws DeserializeException {
+        int id = descriptorId(index);
+        PayloadDescriptor descriptor = registry.get(id);
+        if (descriptor == null) throw new DeserializeException("Unknown payload descriptor id: " + id);
+        return descriptor;
+    }
+
+    /**
+     * Return a read-only buffer over the mapped file with the payload of the record between its position and limit
+     * @param index record index
+     * @return new buffer sharing the mapped content
+     */
+    public ByteBuffer frame(int index) {
+        int start = payloadOffset(index);
+        ByteBuffer frame = buffer.duplicate();
+        frame.limit(start + buffer.getInt(start - PayloadStreamWriter.FRAME_HEADER_SIZE)).position(start);
+        return frame;
+    }
+
+    /**
+     * Return a view of the record. Views are reused, one per descriptor.
+     * @param index record index
+     * @return view, valid until the next call to this method for a record of the same descriptor
+     * @throws DeserializeException if the id of the payload isn't registered
+     */
+    public PayloadView view(int index) throws DeserializeException {
+        PayloadDescriptor descriptor = descriptor(index);
+        PayloadView view = views.get(descriptor);
+        if (view == null) {
+            view = new PayloadView(descriptor);
+            views.put(descriptor, view);
+        }
+        return view.wrap(buffer, payloadOffset(index));
+    }
+
+    /**
+     * Point the view at the record
+     * @param index record index
+     * @param view a view of the descriptor of the record
+     * @return the view
+     * @throws DeserializeException if the record has another descriptor id
+     */
+    public PayloadView view(int index, PayloadView view) throws DeserializeException {
+        int id = descriptorId(index);
+        if (id != view.getDescriptor().getId()) {
+            throw new DeserializeException("Payload descriptor id mismatch: " + id + " <> " + view.getDescriptor().getId());
+        }
+        return view.wrap(buffer, payloadOffset(index));
+    }
+
+    /**
+     * Deserialize the record
+     * @param index record index
+     * @return payload
+     * @throws DeserializeException
+     */
+    public Payload payload(int index) throws DeserializeException {
+        return Payloads.deserialize(descriptor(index), frame(index));
+    }
+
+    /**
+     * Deserialize the record into the target object
+     * @param index record index
+     * @param target target object
+     * @return the target object
+     * @throws DeserializeException
+     */
+    public <T> T payload(int index, T target) throws DeserializeException {
+        return Payloads.into(descriptor(index), frame(index), target);
+    }
+
+    /**
+     * Return the records matching the scanner, evaluated on the mapped bytes without deserializing them.
+     * Records of other descriptors don't match.
+     * @param scanner scanner
+     * @return record indexes in ascending order
+     */
+    public int[] scan(PayloadScanner scanner) {
+        int result[] = new int[16];
+        int matches = 0;
+        for (int i = 0; i < count; i++) {
+            if (scanner.matches(buffer, payloadOffset(i))) {
+                if (matches == result.length) result = Arrays.copyOf(result, matches * 2);
+                result[matches++] = i;
+            }
+        }
+        return Arrays.copyOf(result, matches);
+    }
+
+    /**
+     * Close the file. Views and buffers obtained from the segment stay readable until the mapping is collected.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int payloadOffset(int index) {
+        checkIndex(index);
+        return (int) offsets[index] + PayloadStreamWriter.FRAME_HEADER_SIZE;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count) throw new IndexOutOfBoundsException("Record index: " + index + ", size: " + count);
+    }
+
+    static Path indexFile(Path file) {
+        return file.resolveSibling(file.getFileName() + INDEX_SUFFIX);
+    }
+
+    static void writeIndex(Path indexFile, long segmentLength, long offsets[], int count) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(INDEX_HEADER_SIZE + count * 8);
+        bytes.putInt(INDEX_MAGIC).putShort(VERSION).putShort((short) 0).putLong(segmentLength).putInt(count);
+        bytes.asLongBuffer().put(offsets, 0, count);
+        bytes.rewind();
+        FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * @return the offsets, null if the index is missing or doesn't match the segment
+     */
+    private static long[] readIndex(Path indexFile, long segmentLength) throws IOException {
+        if (!Files.isRegularFile(indexFile)) return null;
+        long size = Files.size(indexFile);
+        if (size < INDEX_HEADER_SIZE) return null;
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(indexFile));
+        if (bytes.getInt() != INDEX_MAGIC || bytes.getShort() != VERSION) return null;
+        bytes.getShort();
+        if (bytes.getLong() != segmentLength) return null;
+        int count = bytes.getInt();
+        if (count < 0 || bytes.remaining() != (long) count * 8) return null;
+        long offsets[] = new long[count];
+        bytes.asLongBuffer().get(offsets);
+        return offsets;
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.io;
+
+import org.mayanjun.pss.DeserializeException;
+import org.mayanjun.pss.SerializeException;
+import org.mayanjun.pss.payload.Payload;
+import org.mayanjun.pss.payload.PayloadCodec;
+import org.mayanjun.pss.payload.PayloadDescriptor;
+import org.mayanjun.pss.payload.PayloadRegistry;
+import org.mayanjun.pss.payload.PayloadView;
+import org.mayanjun.pss.payload.Payloads;
+
+import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Off-heap store of payloads kept in serialized form. Records are appended as length-prefixed frames to direct
+ * memory slabs with a bump pointer and are identified by a <code>long</code> handle (slab id in the high 32 bits,
+ * offset in the slab in the low ones), so millions of records cost their wire size plus a few bytes each and
+ * nothing for the garbage collector to trace. Fields are decoded on access through a {@linkplain PayloadView}.
+ * <p>Memory is reclaimed by whole slabs: {@linkplain #evictBefore(long)} drops the slabs older than a handle,
+ * which suits a store of recent records, and {@linkplain #clear()} drops all of them. Slab ids are never
+ * reused, so a handle of a dropped slab is rejected instead of pointing at another record. The direct memory of a
+ * dropped slab is released when the slab is garbage collected.</p>
+ * <p>Appends are serialized by a lock; reads don't lock and may run concurrently with appends, provided the
+ * handles are passed between threads with a happens-before edge, such as a concurrent map.
+ * {@linkplain #view(long)} reuses one view per descriptor and is not thread safe.</p>
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public class PayloadArena {
+
+    public static final int DEFAULT_SLAB_SIZE = 16 * 1024 * 1024;
+
+    private static final class Slab {
+
+        final int id;
+
+        final ByteBuffer buffer;
+
+        Slab(int id, ByteBuffer buffer) {
+            this.id = id;
+            this.buffer = buffer;
+        }
+    }
+
+    private final PayloadRegistry registry;
+
+    private final int slabSize;
+
+    private final Map<PayloadDescriptor, PayloadView> views = new IdentityHashMap<PayloadDescriptor, PayloadView>();
+
+    /**
+     * Live slabs, oldest first; the array is replaced, never modified, when slabs are added or dropped
+     */
+    private volatile Slab slabs[] = new Slab[0];
+
+    private int nextSlabId;
+
+    /**
+     * Slab appended to, null if none
+     */
+    private Slab current;
+
+    private long recordCount;
+
+    private long usedBytes;
+
+    public PayloadArena(PayloadDescriptor descriptor) {
+        this(new PayloadRegistry(descriptor), DEFAULT_SLAB_SIZE);
+    }
+
+    public PayloadArena(PayloadRegistry registry) {
+        this(registry, DEFAULT_SLAB_SIZE);
+    }
+
+    /**
+     * @param registry registry used to find the descriptors of the records
+     * @param slabSize size of the direct buffers, a record larger than a slab gets a slab of its own
+     */
+    public PayloadArena(PayloadRegistry registry, int slabSize) {
+        if (slabSize < PayloadStreamWriter.FRAME_HEADER_SIZE) throw new IllegalArgumentException("Slab size too small: " + slabSize);
+        this.registry = registry;
+        this.slabSize = slabSize;
+    }
+
+    public PayloadRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Serialize the payload into the arena
+     * @param payloadDescriptor pd
+     * @param payload payload
+     * @return handle of the record
+     * @throws SerializeException if the payload can't be serialized, nothing is stored in this case
+     */
+    public synchronized long put(PayloadDescriptor payloadDescriptor, Object payload) throws SerializeException {
+        if (payload == null) throw new SerializeException("No payload specified");
+        PayloadCodec<?> codec = Payloads.codec(payloadDescriptor, payload.getClass());
+        int size = codec.serializedSize(payload);
+        if (current == null || current.buffer.remaining() < PayloadStreamWriter.FRAME_HEADER_SIZE + size) {
+            addSlab(PayloadStreamWriter.FRAME_HEADER_SIZE + size);
+        }
+        ByteBuffer buffer = current.buffer;
+        int start = buffer.position();
+        try {
+            buffer.position(start + PayloadStreamWriter.FRAME_HEADER_SIZE);
+            codec.serialize(payload, buffer);
+        } catch (SerializeException e) {
+            buffer.position(start);
+            throw e;
+        }
+        return stored(start, size);
+    }
+
+    /**
+     * Copy an already serialized payload into the arena
+     * @param payload remaining bytes of the buffer, the position is moved to its limit
+     * @return handle of the record
+     */
+    public synchronized long put(ByteBuffer payload) {
+        int len = payload.remaining();
+        if (current == null || current.buffer.remaining() < PayloadStreamWriter.FRAME_HEADER_SIZE + len) {
+            addSlab(PayloadStreamWriter.FRAME_HEADER_SIZE + len);
+        }
+        ByteBuffer buffer = current.buffer;
+        int start = buffer.position();
+        buffer.position(start + PayloadStreamWriter.FRAME_HEADER_SIZE);
+        buffer.put(payload);
+        return stored(start, len);
+    }
+
+    public long put(byte [] payload) {
+        return put(ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * @param handle handle
+     * @return length of the payload of the record
+     * @throws IllegalArgumentException if the handle is invalid or its slab was dropped
+     */
+    public int length(long handle) {
+        return buffer(handle).getInt(offset(handle));
+    }
+
+    /**
+     * @return id of the payload of the record
+     */
+    public int descriptorId(long handle) {
+        return buffer(handle).getInt(offset(handle) + PayloadStreamWriter.FRAME_HEADER_SIZE);
+    }
+
+    /**
+     * @return descriptor of the payload of the record
+     * @throws DeserializeException if its id isn't registered
+     */
+    public PayloadDescriptor descriptor(long handle) throws DeserializeException {
+        int id = descriptorId(handle);
+        PayloadDescriptor descriptor = registry.get(id);
+        if (descriptor == null) throw new DeserializeException("Unknown payload descriptor id: " + id);
+        return descriptor;
+    }
+
+    /**
+     * Return a read-only buffer over the slab with the payload of the record between its position and limit
+     * @param handle handle
+     * @return new buffer sharing the slab
+     */
+    public ByteBuffer frame(long handle) {
+        ByteBuffer slab = buffer(handle);
+        int start = offset(handle) + PayloadStreamWriter.FRAME_HEADER_SIZE;
+        ByteBuffer frame = slab.asReadOnlyBuffer();
+        frame.limit(start + slab.getInt(start - PayloadStreamWriter.FRAME_HEADER_SIZE)).position(start);
+        return frame;
+    }
+
+    /**
+     * Return a view of the record. Views are reused, one per descriptor.
+     * @param handle handle
+     * @return view, valid until the next call to this method for a record of the same descriptor
+     * @throws DeserializeException if the id of the payload isn't registered
+     */
+    public PayloadView view(long handle) throws DeserializeException {
+        PayloadDescriptor descriptor = descriptor(handle);
+        PayloadView view = views.get(descriptor);
+        if (view == null) {
+            view = new PayloadView(descriptor);
+            views.put(descriptor, view);
+        }
+        return view.wrap(buffer(handle), offset(handle) + PayloadStreamWriter.FRAME_HEADER_SIZE);
+    }
+
+    /**
+     * Point the view at the record, each thread using its own view
+     * @param handle handle
+     * @param view a view of the descriptor of the record
+     * @return the view
+     * @throws DeserializeException if the record has another descriptor id
+     */
+    public PayloadView view(long handle, PayloadView view) throws DeserializeException {
+        int id = descriptorId(handle);
+        if (id != view.getDescriptor().getId()) {
+            throw new DeserializeException("Payload descriptor id mismatch: " + id + " <> " + view.getDescriptor().getId());
+        }
+        return view.wrap(buffer(handle), offset(handle) + PayloadStreamWriter.FRAME_HEADER_SIZE);
+    }
+
+    /**
+     * Deserialize the record
+     * @param handle handle
+     * @return payload
+     * @throws DeserializeException
+     */
+    public Payload payload(long handle) throws DeserializeException {
+        return Payloads.deserialize(descriptor(handle), frame(handle));
+    }
+
+    /**
+     * Deserialize the record into the target object
+     * @param handle handle
+     * @param target target object
+     * @return the target object
+     * @throws DeserializeException
+     */
+    public <T> T payload(long handle, T target) throws DeserializeException {
+        return Payloads.into(descriptor(handle), frame(handle), target);
+    }
+
+    /**
+     * @param handle handle
+     * @return true if the slab of the handle hasn't been dropped
+     */
+    public boolean contains(long handle) {
+        return slab(handle) != null;
+    }
+
+    /**
+     * Drop the slabs older than the slab of the handle, the handles of their records become invalid
+     * @param handle handle of the oldest record to keep
+     * @return number of bytes of direct memory released
+     */
+    public synchronized long evictBefore(long handle) {
+        int id = (int) (handle >>> 32);
+        Slab live[] = slabs;
+        int drop = 0;
+        long released = 0;
+        while (drop < live.length && live[drop].id < id) {
+            released += live[drop].buffer.capacity();
+            usedBytes -= live[drop].buffer.position();
+            drop++;
+        }
+        if (drop == 0) return 0;
+        Slab kept[] = new Slab[live.length - drop];
+        System.arraycopy(live, drop, kept, 0, kept.length);
+        if (kept.length == 0) current = null;
+        slabs = kept;
+        return released;
+    }
+
+    /**
+     * Drop all slabs, all handles become invalid
+     */
+    public synchronized void clear() {
+        slabs = new Slab[0];
+        current = null;
+        usedBytes = 0;
+    }
+
+    /**
+     * @return number of records stored since the arena was created, dropped ones included
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return number of bytes of the frames in the live slabs
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * @return direct memory held by the live slabs
+     */
+    public long getAllocatedBytes() {
+        long bytes = 0;
+        for (Slab slab : slabs) {
+            bytes += slab.buffer.capacity();
+        }
+        return bytes;
+    }
+
+    public int getSlabCount() {
+        return slabs.length;
+    }
+
+    private long stored(int start, int length) {
+        ByteBuffer buffer = current.buffer;
+        buffer.putInt(start, length);
+        recordCount++;
+        usedBytes += PayloadStreamWriter.FRAME_HEADER_SIZE + length;
+        return ((long) current.id << 32) | start;
+    }
+
+    private void addSlab(int required) {
+        if (nextSlabId == Integer.MAX_VALUE) throw new IllegalStateException("Slab ids exhausted");
+        Slab slab = new Slab(nextSlabId++, ByteBuffer.allocateDirect(Math.max(slabSize, required)));
+        Slab live[] = slabs;
+        Slab added[] = new Slab[live.length + 1];
+        System.arraycopy(live, 0, added, 0, live.length);
+        added[live.length] = slab;
+        slabs = added;
+        current = slab;
+    }
+
+    private Slab slab(long handle) {
+        Slab live[] = slabs;
+        if (live.length == 0) return null;
+        int index = (int) (handle >>> 32) - live[0].id;
+        if (index < 0 || index >= live.length) return null;
+        return live[index];
+    }
+
+    private ByteBuffer buffer(long handle) {
+        Slab slab = slab(handle);
+        if (slab == null) throw new IllegalArgumentException("Invalid or released handle: " + handle);
+        int offset = offset(handle);
+        if (offset < 0 || offset + PayloadStreamWriter.FRAME_HEADER_SIZE > slab.buffer.capacity()) {
+            throw new IllegalArgumentException("Invalid handle: " + handle);
+        }
+        return slab.buffer;
+    }
+
+    private static int offset(long handle) {
+        return (int) handle;
+    }
+}
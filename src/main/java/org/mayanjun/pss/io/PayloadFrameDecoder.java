@@ -0,0 +1,330 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.io;
+
+import org.mayanjun.pss.DeserializeException;
+import org.mayanjun.pss.payload.Payload;
+import org.mayanjun.pss.payload.PayloadDescriptor;
+import org.mayanjun.pss.payload.PayloadRegistry;
+import org.mayanjun.pss.payload.PayloadView;
+import org.mayanjun.pss.payload.Payloads;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Incremental decoder of the length-prefixed frames written by {@linkplain PayloadStreamWriter}, for input that
+ * arrives in arbitrary pieces such as the reads of a non-blocking {@linkplain java.nio.channels.SocketChannel}.
+ * Bytes are accumulated in an internal buffer, either copied by {@linkplain #append(ByteBuffer)} or read straight
+ * into it by {@linkplain #read(ReadableByteChannel)}, and every frame is available as soon as it is complete:
+ * <pre>
+ * if (decoder.read(channel) &lt; 0) channel.close();
+ * while (decoder.next()) {
+ *     Payload payload = decoder.payload();
+ *     ...
+ * }
+ * </pre>
+ * Unlike {@linkplain PayloadStreamReader#next()}, {@linkplain #next()} never blocks: it returns false when the
+ * next frame is not complete yet and keeps the partial bytes for the next read. The buffer is compacted when the
+ * consumed bytes get in the way of new ones and grows for frames larger than itself.
+ * <p>A decoder is not thread safe.</p>
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public class PayloadFrameDecoder {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Free space made before reading from a channel when no frame needs more
+     */
+    private static final int MIN_READ_SIZE = 4096;
+
+    private final PayloadRegistry registry;
+
+    private final Map<PayloadDescriptor, PayloadView> views = new IdentityHashMap<PayloadDescriptor, PayloadView>();
+
+    private int maxFrameLength = PayloadStreamReader.DEFAULT_MAX_FRAME_LENGTH;
+
+    private ByteBuffer buffer;
+
+    /**
+     * Start of the unconsumed data
+     */
+    private int readPosition;
+
+    /**
+     * End of the buffered data
+     */
+    private int dataEnd;
+
+    private int frameStart = -1;
+
+    private int frameLength;
+
+    private long frameCount;
+
+    private boolean endOfStream;
+
+    public PayloadFrameDecoder(PayloadRegistry registry) {
+        this(registry, DEFAULT_BUFFER_SIZE);
+    }
+
+    public PayloadFrameDecoder(PayloadDescriptor descriptor) {
+        this(new PayloadRegistry(descriptor), DEFAULT_BUFFER_SIZE);
+    }
+
+    public PayloadFrameDecoder(PayloadRegistry registry, int bufferSize) {
+        this.registry = registry;
+        this.buffer = ByteBuffer.allocate(Math.max(bufferSize, PayloadStreamWriter.FRAME_HEADER_SIZE));
+    }
+
+    public PayloadRegistry getRegistry() {
+        return registry;
+    }
+
+    public int getMaxFrameLength() {
+        return maxFrameLength;
+    }
+
+    public void setMaxFrameLength(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    /**
+     * Copy the remaining bytes of the chunk to the decoder
+     * @param chunk bytes received, the position is moved to its limit
+     */
+    public void append(ByteBuffer chunk) {
+        int n = chunk.remaining();
+        ensureWritable(n);
+        buffer.limit(buffer.capacity()).position(dataEnd);
+        buffer.put(chunk);
+        dataEnd += n;
+    }
+
+    public void append(byte chunk[], int offset, int length) {
+        append(ByteBuffer.wrap(chunk, offset, length));
+    }
+
+    /**
+     * Read the available bytes of the channel into the decoder. A non-blocking channel is read once, so a call
+     * returns 0 if there is nothing to read.
+     * @param channel channel
+     * @return number of bytes read, -1 at the end of the stream
+     * @throws IOException if the channel fails
+     */
+    public int read(ReadableByteChannel channel) throws IOException {
+        ensureWritable(Math.max(missing(), MIN_READ_SIZE));
+        buffer.limit(buffer.capacity()).position(dataEnd);
+        int read = channel.read(buffer);
+        if (read < 0) {
+            endOfStream = true;
+        } else {
+            dataEnd += read;
+        }
+        return read;
+    }
+
+    /**
+     * Advance to the next complete frame
+     * @return false if the next frame is not complete yet
+     * @throws EOFException if the end of the stream was reached in the middle of a frame
+     * @throws IOException if a frame is larger than {@linkplain #getMaxFrameLength()}
+     */
+    public boolean next() throws IOException {
+        if (frameStart >= 0) {
+            readPosition = frameStart + frameLength;
+            frameStart = -1;
+        }
+        buffer.limit(buffer.capacity());
+        int available = dataEnd - readPosition;
+        if (available == 0) {
+            readPosition = 0;
+            dataEnd = 0;
+            return false;
+        }
+        if (available < PayloadStreamWriter.FRAME_HEADER_SIZE) {
+            if (endOfStream) throw new EOFException("Truncated frame header");
+            return false;
+        }
+        int len = buffer.getInt(readPosition);
+        if (len < 0 || len > maxFrameLength) throw new IOException("Invalid frame length: " + len);
+        if (available - PayloadStreamWriter.FRAME_HEADER_SIZE < len) {
+            if (endOfStream) throw new EOFException("Truncated frame, " + len + " bytes expected");
+            return false;
+        }
+        frameStart = readPosition + PayloadStreamWriter.FRAME_HEADER_SIZE;
+        frameLength = len;
+        frameCount++;
+        return true;
+    }
+
+    /**
+     * Return the internal buffer positioned at the current frame: the payload is between its position and limit.
+     * The content is only valid until the next call to {@linkplain #next()}, {@linkplain #append(ByteBuffer)} or
+     * {@linkplain #read(ReadableByteChannel)}; the buffer may be read but must not be modified.
+     * @return buffer
+     */
+    public ByteBuffer frame() {
+        checkFrame();
+        buffer.limit(frameStart + frameLength).position(frameStart);
+        return buffer;
+    }
+
+    public int frameLength() {
+        checkFrame();
+        return frameLength;
+    }
+
+    /**
+     * @return id of the payload in the current frame
+     */
+    public int descriptorId() {
+        checkFrame();
+        return buffer.getInt(frameStart);
+    }
+
+    /**
+     * @return descriptor of the payload in the current frame
+     * @throws DeserializeException if its id isn't registered
+     */
+    public PayloadDescriptor descriptor() throws DeserializeException {
+        PayloadDescriptor descriptor = registry.get(descriptorId());
+        if (descriptor == null) throw new DeserializeException("Unknown payload descriptor id: " + descriptorId());
+        return descriptor;
+    }
+
+    /**
+     * Return a view of the current frame. Views are reused, one per descriptor.
+     * @return view, valid as long as {@linkplain #frame()}
+     * @throws DeserializeException if the id of the payload isn't registered
+     */
+    public PayloadView view() throws DeserializeException {
+        PayloadDescriptor descriptor = descriptor();
+        PayloadView view = views.get(descriptor);
+        if (view == null) {
+            view = new PayloadView(descriptor);
+            views.put(descriptor, view);
+        }
+        return view.wrap(frame(), frameStart);
+    }
+
+    /**
+     * Deserialize the current frame
+     * @return payload
+     * @throws DeserializeException
+     */
+    public Payload payload() throws DeserializeException {
+        return Payloads.deserialize(descriptor(), frame());
+    }
+
+    /**
+     * Deserialize the current frame into the target object
+     * @param target target object
+     * @return the target object
+     * @throws DeserializeException
+     */
+    public <T> T payload(T target) throws DeserializeException {
+        return Payloads.into(descriptor(), frame(), target);
+    }
+
+    /**
+     * Advance to the next complete frame and deserialize it
+     * @return payload, null if the next frame is not complete yet
+     * @throws IOException
+     * @throws DeserializeException
+     */
+    public Payload poll() throws IOException, DeserializeException {
+        return next() ? payload() : null;
+    }
+
+    /**
+     * @return number of frames decoded
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return number of buffered bytes not consumed yet, including the current frame
+     */
+    public int buffered() {
+        return dataEnd - readPosition;
+    }
+
+    /**
+     * @return true once {@linkplain #read(ReadableByteChannel)} has reached the end of the stream
+     */
+    public boolean isEndOfStream() {
+        return endOfStream;
+    }
+
+    /**
+     * Discard the buffered bytes and the end of stream state, to decode another stream
+     */
+    public void reset() {
+        readPosition = 0;
+        dataEnd = 0;
+        frameStart = -1;
+        endOfStream = false;
+    }
+
+    /**
+     * @return number of bytes still missing to complete the pending frame, 0 if it is complete or unknown
+     */
+    private int missing() {
+        int start = frameStart >= 0 ? frameStart + frameLength : readPosition;
+        int available = dataEnd - start;
+        if (available < PayloadStreamWriter.FRAME_HEADER_SIZE) return PayloadStreamWriter.FRAME_HEADER_SIZE - available;
+        buffer.limit(buffer.capacity());
+        int len = buffer.getInt(start);
+        if (len < 0 || len > maxFrameLength) return 0;
+        return Math.max(0, PayloadStreamWriter.FRAME_HEADER_SIZE + len - available);
+    }
+
+    /**
+     * Make room for n more bytes after the buffered data, compacting or growing the buffer if needed.
+     * The current frame is kept.
+     */
+    private void ensureWritable(int n) {
+        if (buffer.capacity() - dataEnd >= n) return;
+        int available = dataEnd - readPosition;
+        if (buffer.capacity() < available + n) {
+            int capacity = buffer.capacity();
+            while (capacity < available + n) {
+                capacity = capacity << 1;
+            }
+            ByteBuffer bigger = ByteBuffer.allocate(capacity);
+            System.arraycopy(buffer.array(), readPosition, bigger.array(), 0, available);
+            buffer = bigger;
+        } else {
+            System.arraycopy(buffer.array(), readPosition, buffer.array(), 0, available);
+        }
+        if (frameStart >= 0) frameStart -= readPosition;
+        readPosition = 0;
+        dataEnd = available;
+    }
+
+    private void checkFrame() {
+        if (frameStart < 0) throw new IllegalStateException("No current frame");
+    }
+}
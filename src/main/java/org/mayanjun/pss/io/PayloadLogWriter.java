@@ -0,0 +1,404 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.io;
+
+import org.mayanjun.pss.SerializeException;
+import org.mayanjun.pss.payload.PayloadCodec;
+import org.mayanjun.pss.payload.PayloadDescriptor;
+import org.mayanjun.pss.payload.Payloads;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only durability log with group commit. Producer threads serialize their payloads and queue them;
+ * one writer thread takes everything queued, up to the group size, writes it with a single write and makes it
+ * durable with a single {@linkplain FileChannel#force(boolean)}, then completes the futures of the group.
+ * The cost of a force is so shared by all the records that arrived while the previous group was being written.
+ * The writer may also wait up to a maximum delay after the first record of a group for more records to arrive.
+ * <p>The log is a segment file, read back by {@linkplain MappedPayloadSegment} (without index sidecar) or by a
+ * {@linkplain PayloadStreamReader} after the header. An existing log is appended to; a frame cut short at its end
+ * by a crash is truncated when it is opened.</p>
+ * <p>A writer is thread safe. Once a write or force fails the log stops accepting records, since what reached
+ * the storage device is unknown.</p>
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public class PayloadLogWriter implements Closeable {
+
+    public static final int DEFAULT_MAX_GROUP_BYTES = 1024 * 1024;
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 64 * 1024;
+
+    private static final class Entry {
+
+        final byte frame[];
+
+        final CompletableFuture<Long> future;
+
+        Entry(byte frame[], CompletableFuture<Long> future) {
+            this.frame = frame;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Queued by {@linkplain #close()} to stop the writer thread
+     */
+    private static final Entry CLOSE = new Entry(new byte[0], null);
+
+    private final Path file;
+
+    private final FileChannel channel;
+
+    private final int maxGroupBytes;
+
+    private final long maxDelayNanos;
+
+    private final BlockingQueue<Entry> queue;
+
+    private final Thread writer;
+
+    private ByteBuffer groupBuffer;
+
+    private volatile long committedLength;
+
+    private volatile long recordCount;
+
+    private volatile long groupCount;
+
+    private volatile IOException failure;
+
+    private volatile boolean closed;
+
+    /**
+     * Open the log with the default group size and no delay
+     * @param file log file, created if missing
+     * @throws IOException if the file can't be opened or is not a segment
+     */
+    public PayloadLogWriter(Path file) throws IOException {
+        this(file, DEFAULT_MAX_GROUP_BYTES, 0, TimeUnit.NANOSECONDS);
+    }
+
+    public PayloadLogWriter(Path file, int maxGroupBytes, long maxDelay, TimeUnit unit) throws IOException {
+        this(file, maxGroupBytes, maxDelay, unit, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Open the log
+     * @param file log file, created if missing
+     * @param maxGroupBytes a group is written as soon as it holds this many bytes; a larger record is written alone
+     * @param maxDelay time the writer waits after the first record of a group for more records, 0 to write what
+     *                 is queued right away
+     * @param unit unit of the delay
+     * @param queueCapacity number of records that may be queued, {@linkplain #append(byte[])} blocks beyond
+     * @throws IOException if the file can't be opened or is not a segment
+     */
+    public PayloadLogWriter(Path file, int maxGroupBytes, long maxDelay, TimeUnit unit, int queueCapacity) throws IOException {
+        if (maxGroupBytes < PayloadStreamWriter.FRAME_HEADER_SIZE) {
+            throw new IllegalArgumentException("Group size too small: " + maxGroupBytes);
+        }
+        if (maxDelay < 0) throw new IllegalArgumentException("Negative delay: " + maxDelay);
+        if (queueCapacity <= 0) throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+        this.file = file;
+        this.maxGroupBytes = maxGroupBytes;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.queue = new LinkedBlockingQueue<Entry>(queueCapacity);
+        this.groupBuffer = ByteBuffer.allocateDirect(maxGroupBytes);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.committedLength = recover(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeGroups();
+            }
+        }, "pss-log-writer-" + file.getFileName());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Serialize the payload in the calling thread and queue it
+     * @param payloadDescriptor pd
+     * @param payload payload
+     * @return future completed with the offset of the frame in the log once it is durable
+     * @throws SerializeException if the payload can't be serialized, nothing is queued in this case
+     * @throws IOException if the log is closed or failed, or the thread is interrupted while the queue is full
+     */
+    public CompletableFuture<Long> append(PayloadDescriptor payloadDescriptor, Object payload) throws SerializeException, IOException {
+        if (payload == null) throw new SerializeException("No payload specified");
+        PayloadCodec<?> codec = Payloads.codec(payloadDescriptor, payload.getClass());
+        int size = codec.serializedSize(payload);
+        ByteBuffer frame = ByteBuffer.allocate(PayloadStreamWriter.FRAME_HEADER_SIZE + size);
+        frame.putInt(size);
+        codec.serialize(payload, frame);
+        return enqueue(frame.array());
+    }
+
+    /**
+     * Queue an already serialized payload
+     * @param payload remaining bytes of the buffer, the position is moved to its limit
+     * @return future completed with the offset of the frame in the log once it is durable
+     * @throws IllegalArgumentException if the payload is shorter than its 4 bytes id, nothing is queued in this case
+     * @throws IOException if the log is closed or failed, or the thread is interrupted while the queue is full
+     */
+    public CompletableFuture<Long> append(ByteBuffer payload) throws IOException {
+        if (payload.remaining() < 4) throw new IllegalArgumentException("Payload too short: " + payload.remaining() + " bytes");
+        byte frame[] = new byte[PayloadStreamWriter.FRAME_HEADER_SIZE + payload.remaining()];
+        ByteBuffer.wrap(frame).putInt(payload.remaining()).put(payload);
+        return enqueue(frame);
+    }
+
+    public CompletableFuture<Long> append(byte [] payload) throws IOException {
+        return append(ByteBuffer.wrap(payload));
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return length of the log made durable so far
+     */
+    public long getCommittedLength() {
+        return committedLength;
+    }
+
+    /**
+     * @return number of records made durable by this writer
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return number of groups written, so of forces
+     */
+    public long getGroupCount() {
+        return groupCount;
+    }
+
+    /**
+     * Write the queued records and close the log. Records appended concurrently with the close may fail.
+     * @throws IOException if the log failed or the thread is interrupted while waiting for the writer
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        try {
+            queue.put(CLOSE);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing the log");
+        } finally {
+            if (!writer.isAlive()) {
+                channel.close();
+                failQueued(new IOException("Log closed"));
+            }
+        }
+        if (failure != null) throw new IOException("Log failed: " + file, failure);
+    }
+
+    private CompletableFuture<Long> enqueue(byte frame[]) throws IOException {
+        checkOpen();
+        CompletableFuture<Long> future = new CompletableFuture<Long>();
+        try {
+            queue.put(new Entry(frame, future));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while queueing a record");
+        }
+        if (closed || failure != null) {
+            // the writer is stopping and may have drained the queue before this record was added
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            failQueued(failure != null ? failure : new IOException("Log closed"));
+        }
+        return future;
+    }
+
+    private void checkOpen() throws IOException {
+        if (failure != null) throw new IOException("Log failed: " + file, failure);
+        if (closed) throw new IOException("Log closed: " + file);
+    }
+
+    private void writeGroups() {
+        List<Entry> group = new ArrayList<Entry>();
+        // record taken from the queue that didn't fit the previous group, it starts the next one
+        Entry carried = null;
+        boolean running = true;
+        try {
+            while (running) {
+                Entry first = carried != null ? carried : queue.take();
+                carried = null;
+                if (first == CLOSE) break;
+                group.add(first);
+                int bytes = first.frame.length;
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (bytes < maxGroupBytes) {
+                    Entry next = queue.poll();
+                    if (next == null && maxDelayNanos > 0) {
+                        long wait = deadline - System.nanoTime();
+                        if (wait > 0) next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    }
+                    if (next == null) break;
+                    if (next == CLOSE) {
+                        running = false;
+                        break;
+                    }
+                    if (bytes + next.frame.length > maxGroupBytes) {
+                        carried = next;
+                        break;
+                    }
+                    group.add(next);
+                    bytes += next.frame.length;
+                }
+                commit(group, bytes);
+                group.clear();
+            }
+        } catch (InterruptedException e) {
+            failure = new InterruptedIOException("Log writer interrupted");
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            IOException error = failure != null ? failure : new IOException("Log closed");
+            for (Entry entry : group) {
+                entry.future.completeExceptionally(error);
+            }
+            if (carried != null) carried.future.completeExceptionally(error);
+            failQueued(error);
+        }
+    }
+
+    private void commit(List<Entry> group, int bytes) throws IOException {
+        ByteBuffer buffer = groupBuffer;
+        if (buffer.capacity() < bytes) buffer = ByteBuffer.allocateDirect(bytes);
+        buffer.clear();
+        for (Entry entry : group) {
+            buffer.put(entry.frame);
+        }
+        buffer.flip();
+        long position = committedLength;
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+        channel.force(false);
+        committedLength = position + bytes;
+        recordCount += group.size();
+        groupCount++;
+        for (Entry entry : group) {
+            entry.future.complete(position);
+            position += entry.frame.length;
+        }
+    }
+
+    private void failQueued(IOException error) {
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            if (entry != CLOSE) entry.future.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Write the header of a new log, or check the header of an existing one and truncate a frame cut short
+     * at its end or a zero-filled tail. Only the bytes after the last complete frame are truncated: a frame
+     * shorter than its 4 bytes id followed by non-zero bytes stops the recovery with an error instead of
+     * dropping the frames after it, the same frames {@linkplain MappedPayloadSegment} rejects.
+     * @return length of the log
+     */
+    private static long recover(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            ByteBuffer header = ByteBuffer.allocate(MappedPayloadSegment.HEADER_SIZE);
+            header.putInt(MappedPayloadSegment.MAGIC).putShort(MappedPayloadSegment.VERSION).putShort((short) 0);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+            return MappedPayloadSegment.HEADER_SIZE;
+        }
+        ByteBuffer header = ByteBuffer.allocate(MappedPayloadSegment.HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+        }
+        if (header.hasRemaining() || header.getInt(0) != MappedPayloadSegment.MAGIC) {
+            throw new IOException("Not a payload log");
+        }
+        short version = header.getShort(4);
+        if (version != MappedPayloadSegment.VERSION) throw new IOException("Unsupported log version: " + version);
+
+        ByteBuffer length = ByteBuffer.allocate(PayloadStreamWriter.FRAME_HEADER_SIZE);
+        long pos = MappedPayloadSegment.HEADER_SIZE;
+        while (pos + PayloadStreamWriter.FRAME_HEADER_SIZE <= size) {
+            length.clear();
+            while (length.hasRemaining() && channel.read(length, pos + length.position()) > 0) {
+            }
+            int len = length.getInt(0);
+            if (len < 4) {
+                // a zero-filled tail left by a crash is not data, anything else would be lost by truncating
+                if (zeros(channel, pos, size)) break;
+                throw new IOException("Malformed frame at offset " + pos);
+            }
+            if (pos + PayloadStreamWriter.FRAME_HEADER_SIZE + len > size) break;
+            pos += PayloadStreamWriter.FRAME_HEADER_SIZE + len;
+        }
+        if (pos < size) {
+            channel.truncate(pos);
+            channel.force(true);
+        }
+        return pos;
+    }
+
+    private static boolean zeros(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(8192);
+        long pos = from;
+        while (pos < to) {
+            chunk.clear();
+            if (to - pos < chunk.capacity()) chunk.limit((int) (to - pos));
+            int n = channel.read(chunk, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (chunk.get(i) != 0) return false;
+            }
+            pos += n;
+        }
+        return true;
+    }
+}
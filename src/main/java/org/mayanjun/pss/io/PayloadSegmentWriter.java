@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.io;
+
+import org.mayanjun.pss.SerializeException;
+import org.mayanjun.pss.payload.PayloadDescriptor;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes a segment file read back by {@linkplain MappedPayloadSegment}: a small header followed by the same
+ * length-prefixed frames as {@linkplain PayloadStreamWriter}. The offset of every frame is recorded while writing
+ * and saved to the index sidecar file when the writer is closed, so the segment can be opened without a scan.
+ * <p>A writer is not thread safe.</p>
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public class PayloadSegmentWriter implements Closeable, Flushable {
+
+    private final Path file;
+
+    private final FileChannel channel;
+
+    private final PayloadStreamWriter writer;
+
+    private long offsets[] = new long[1024];
+
+    private int count;
+
+    private boolean closed;
+
+    /**
+     * Create the segment file, an existing file is truncated
+     * @param file segment file
+     * @throws IOException if the file can't be created
+     */
+    public PayloadSegmentWriter(Path file) throws IOException {
+        this(file, PayloadStreamWriter.DEFAULT_BUFFER_SIZE);
+    }
+
+    public PayloadSegmentWriter(Path file, int bufferSize) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(MappedPayloadSegment.HEADER_SIZE);
+            header.putInt(MappedPayloadSegment.MAGIC).putShort(MappedPayloadSegment.VERSION).putShort((short) 0);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.writer = new PayloadStreamWriter(channel, bufferSize);
+    }
+
+    /**
+     * Append the payload to the segment
+     * @param payloadDescriptor pd
+     * @param payload payload
+     * @return index of the record in the segment
+     * @throws SerializeException if the payload can't be serialized, nothing is written in this case
+     * @throws IOException if the file can't be written
+     */
+    public int write(PayloadDescriptor payloadDescriptor, Object payload) throws SerializeException, IOException {
+        long offset = MappedPayloadSegment.HEADER_SIZE + writer.position();
+        writer.write(payloadDescriptor, payload);
+        return record(offset);
+    }
+
+    /**
+     * Append an already serialized payload to the segment
+     * @param payload remaining bytes of the buffer, the position is moved to its limit
+     * @return index of the record in the segment
+     * @throws IOException if the file can't be written
+     */
+    public int writeFrame(ByteBuffer payload) throws IOException {
+        long offset = MappedPayloadSegment.HEADER_SIZE + writer.position();
+        writer.writeFrame(payload);
+        return record(offset);
+    }
+
+    public int writeFrame(byte [] payload) throws IOException {
+        return writeFrame(ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * @return number of records written
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return length of the segment including the records still buffered
+     */
+    public long length() {
+        return MappedPayloadSegment.HEADER_SIZE + writer.position();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Flush the buffered records and force them to the storage device
+     * @throws IOException
+     */
+    public void sync() throws IOException {
+        writer.flush();
+        channel.force(false);
+    }
+
+    /**
+     * Flush the buffered records, write the index sidecar file and close the segment
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        long length = length();
+        writer.close();
+        MappedPayloadSegment.writeIndex(MappedPayloadSegment.indexFile(file), length, offsets, count);
+    }
+
+    private int record(long offset) {
+        if (count == offsets.length) offsets = Arrays.copyOf(offsets, count << 1);
+        offsets[count] = offset;
+        return count++;
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.io;
+
+import org.mayanjun.pss.DeserializeException;
+import org.mayanjun.pss.payload.Payload;
+import org.mayanjun.pss.payload.PayloadDescriptor;
+import org.mayanjun.pss.payload.PayloadRegistry;
+import org.mayanjun.pss.payload.PayloadView;
+import org.mayanjun.pss.payload.Payloads;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Reads the length-prefixed frames written by {@linkplain PayloadStreamWriter}. The input is read in large chunks
+ * into an internal buffer that is compacted and reused; a frame is exposed in place, so a loop like
+ * <pre>
+ * while (reader.next()) {
+ *     PayloadView view = reader.view();
+ *     ...
+ * }
+ * </pre>
+ * doesn't allocate per record. The descriptor of a frame is found from its id through a {@linkplain PayloadRegistry}.
+ * <p>A reader is not thread safe.</p>
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public class PayloadStreamReader implements Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Frames larger than this are rejected as corrupted
+     */
+    public static final int DEFAULT_MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    private final InputStream inputStream;
+
+    private final ReadableByteChannel channel;
+
+    private final PayloadRegistry registry;
+
+    private final Map<PayloadDescriptor, PayloadView> views = new IdentityHashMap<PayloadDescriptor, PayloadView>();
+
+    private int maxFrameLength = DEFAULT_MAX_FRAME_LENGTH;
+
+    private ByteBuffer buffer;
+
+    /**
+     * Start of the unread data
+     */
+    private int readPosition;
+
+    /**
+     * End of the buffered data
+     */
+    private int dataEnd;
+
+    private int frameStart = -1;
+
+    private int frameLength;
+
+    private long frameCount;
+
+    private boolean eof;
+
+    public PayloadStreamReader(InputStream inputStream, PayloadRegistry registry) {
+        this(inputStream, null, registry, DEFAULT_BUFFER_SIZE);
+    }
+
+    public PayloadStreamReader(InputStream inputStream, PayloadDescriptor descriptor) {
+        this(inputStream, null, new PayloadRegistry(descriptor), DEFAULT_BUFFER_SIZE);
+    }
+
+    public PayloadStreamReader(InputStream inputStream, PayloadRegistry registry, int bufferSize) {
+        this(inputStream, null, registry, bufferSize);
+    }
+
+    public PayloadStreamReader(ReadableByteChannel channel, PayloadRegistry registry) {
+        this(null, channel, registry, DEFAULT_BUFFER_SIZE);
+    }
+
+    public PayloadStreamReader(ReadableByteChannel channel, PayloadDescriptor descriptor) {
+        this(null, channel, new PayloadRegistry(descriptor), DEFAULT_BUFFER_SIZE);
+    }
+
+    public PayloadStreamReader(ReadableByteChannel channel, PayloadRegistry registry, int bufferSize) {
+        this(null, channel, registry, bufferSize);
+    }
+
+    private PayloadStreamReader(InputStream inputStream, ReadableByteChannel channel, PayloadRegistry registry, int bufferSize) {
+        this.inputStream = inputStream;
+        this.channel = channel;
+        this.registry = registry;
+        this.buffer = ByteBuffer.allocate(Math.max(bufferSize, PayloadStreamWriter.FRAME_HEADER_SIZE));
+    }
+
+    public PayloadRegistry getRegistry() {
+        return registry;
+    }
+
+    public int getMaxFrameLength() {
+        return maxFrameLength;
+    }
+
+    public void setMaxFrameLength(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    /**
+     * Advance to the next frame
+     * @return false at the end of the stream
+     * @throws EOFException if the stream ends in the middle of a frame
+     * @throws IOException if the underlying stream fails or a frame is larger than {@linkplain #getMaxFrameLength()}
+     */
+    public boolean next() throws IOException {
+        if (frameStart >= 0) {
+            readPosition = frameStart + frameLength;
+            frameStart = -1;
+        }
+        buffer.limit(buffer.capacity());
+        if (!fill(PayloadStreamWriter.FRAME_HEADER_SIZE)) {
+            if (dataEnd > readPosition) throw new EOFException("Truncated frame header");
+            return false;
+        }
+        int len = buffer.getInt(readPosition);
+        if (len < 0 || len > maxFrameLength) throw new IOException("Invalid frame length: " + len);
+        if (!fill(PayloadStreamWriter.FRAME_HEADER_SIZE + len)) throw new EOFException("Truncated frame, " + len + " bytes expected");
+        frameStart = readPosition + PayloadStreamWriter.FRAME_HEADER_SIZE;
+        frameLength = len;
+        frameCount++;
+        return true;
+    }
+
+    /**
+     * Return the internal buffer positioned at the current frame: the payload is between its position and limit.
+     * The content is only valid until the next call to {@linkplain #next()}; the buffer may be read but must not be modified.
+     * @return buffer
+     */
+    public ByteBuffer frame() {
+        checkFrame();
+        buffer.limit(frameStart + frameLength).position(frameStart);
+        return buffer;
+    }
+
+    public int frameLength() {
+        checkFrame();
+        return frameLength;
+    }
+
+    /**
+     * @return id of the payload in the current frame
+     */
+    public int descriptorId() {
+        checkFrame();
+        return buffer.getInt(frameStart);
+    }
+
+    /**
+     * @return descriptor of the payload in the current frame
+     * @throws DeserializeException if its id isn't registered
+     */
+    public PayloadDescriptor descriptor() throws DeserializeException {
+        PayloadDescriptor descriptor = registry.get(descriptorId());
+        if (descriptor == null) throw new DeserializeException("Unknown payload descriptor id: " + descriptorId());
+        return descriptor;
+    }
+
+    /**
+     * Return a view of the current frame. Views are reused, one per descriptor.
+     * @return view, valid until the next call to {@linkplain #next()}
+     * @throws DeserializeException if the id of the payload isn't registered
+     */
+    public PayloadView view() throws DeserializeException {
+        PayloadDescriptor descriptor = descriptor();
+        PayloadView view = views.get(descriptor);
+        if (view == null) {
+            view = new PayloadView(descriptor);
+            views.put(descriptor, view);
+        }
+        return view.wrap(frame(), frameStart);
+    }
+
+    /**
+     * Deserialize the current frame
+     * @return payload
+     * @throws DeserializeException
+     */
+    public Payload payload() throws DeserializeException {
+        return Payloads.deserialize(descriptor(), frame());
+    }
+
+    /**
+     * Deserialize the current frame into the target object
+     * @param target target object
+     * @return the target object
+     * @throws DeserializeException
+     */
+    public <T> T payload(T target) throws DeserializeException {
+        return Payloads.into(descriptor(), frame(), target);
+    }
+
+    /**
+     * Advance to the next frame and deserialize it
+     * @return payload, null at the end of the stream
+     * @throws IOException
+     * @throws DeserializeException
+     */
+    public Payload read() throws IOException, DeserializeException {
+        return next() ? payload() : null;
+    }
+
+    /**
+     * @return number of frames read
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (inputStream != null) {
+            inputStream.close();
+        } else {
+            channel.close();
+        }
+    }
+
+    /**
+     * Make sure at least n unread bytes are buffered, compacting or growing the buffer if needed
+     * @return false if the stream ends before
+     */
+    private boolean fill(int n) throws IOException {
+        int available = dataEnd - readPosition;
+        if (available >= n) return true;
+        if (eof) return false;
+
+        if (buffer.capacity() < n) {
+            int capacity = buffer.capacity();
+            while (capacity < n) {
+                capacity = capacity << 1;
+            }
+            ByteBuffer bigger = ByteBuffer.allocate(capacity);
+            System.arraycopy(buffer.array(), readPosition, bigger.array(), 0, available);
+            buffer = bigger;
+            readPosition = 0;
+            dataEnd = available;
+        } else if (readPosition + n > buffer.capacity()) {
+            System.arraycopy(buffer.array(), readPosition, buffer.array(), 0, available);
+            readPosition = 0;
+            dataEnd = available;
+        }
+
+        while (dataEnd - readPosition < n) {
+            int read;
+            if (inputStream != null) {
+                read = inputStream.read(buffer.array(), dataEnd, buffer.capacity() - dataEnd);
+            } else {
+                buffer.limit(buffer.capacity()).position(dataEnd);
+                read = channel.read(buffer);
+            }
+            if (read < 0) {
+                eof = true;
+                break;
+            }
+            dataEnd += read;
+        }
+        return dataEnd - readPosition >= n;
+    }
+
+    private void checkFrame() {
+        if (frameStart < 0) throw new IllegalStateException("No current frame");
+    }
+}
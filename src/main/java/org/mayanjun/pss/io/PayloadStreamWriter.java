@@ -0,0 +1,205 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.io;
+
+import org.mayanjun.pss.SerializeException;
+import org.mayanjun.pss.payload.PayloadCodec;
+import org.mayanjun.pss.payload.PayloadDescriptor;
+import org.mayanjun.pss.payload.Payloads;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes a sequence of payloads as length-prefixed frames: a 4 bytes big-endian length followed by the
+ * serialized payload. Payloads are serialized straight into an internal buffer that is reused for the whole
+ * stream and written out when it is full or on {@linkplain #flush()}.
+ * <p>A writer is not thread safe.</p>
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public class PayloadStreamWriter implements Closeable, Flushable {
+
+    /**
+     * Size of the length prefix of a frame
+     */
+    public static final int FRAME_HEADER_SIZE = 4;
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream outputStream;
+
+    private final WritableByteChannel channel;
+
+    private ByteBuffer buffer;
+
+    private long frameCount;
+
+    private long bytesWritten;
+
+    private boolean closed;
+
+    public PayloadStreamWriter(OutputStream outputStream) {
+        this(outputStream, DEFAULT_BUFFER_SIZE);
+    }
+
+    public PayloadStreamWriter(OutputStream outputStream, int bufferSize) {
+        this(outputStream, null, bufferSize);
+    }
+
+    public PayloadStreamWriter(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public PayloadStreamWriter(WritableByteChannel channel, int bufferSize) {
+        this(null, channel, bufferSize);
+    }
+
+    private PayloadStreamWriter(OutputStream outputStream, WritableByteChannel channel, int bufferSize) {
+        if (bufferSize < FRAME_HEADER_SIZE) throw new IllegalArgumentException("Buffer size too small: " + bufferSize);
+        this.outputStream = outputStream;
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Serialize the payload as the next frame
+     * @param payloadDescriptor pd
+     * @param payload payload
+     * @throws SerializeException if the payload can't be serialized, nothing is written in this case
+     * @throws IOException if the underlying stream fails
+     */
+    public void write(PayloadDescriptor payloadDescriptor, Object payload) throws SerializeException, IOException {
+        ensureOpen();
+        if (payload == null) throw new SerializeException("No payload specified");
+        PayloadCodec<?> codec = Payloads.codec(payloadDescriptor, payload.getClass());
+        int size = codec.serializedSize(payload);
+        if (buffer.remaining() < FRAME_HEADER_SIZE + size) {
+            flushBuffer();
+            if (buffer.capacity() < FRAME_HEADER_SIZE + size) grow(FRAME_HEADER_SIZE + size);
+        }
+        int start = buffer.position();
+        try {
+            buffer.position(start + FRAME_HEADER_SIZE);
+            codec.serialize(payload, buffer);
+        } catch (SerializeException e) {
+            buffer.position(start);
+            throw e;
+        }
+        buffer.putInt(start, size);
+        frameCount++;
+    }
+
+    /**
+     * Write an already serialized payload as the next frame
+     * @param payload remaining bytes of the buffer, the position is moved to its limit
+     * @throws IOException if the underlying stream fails
+     */
+    public void writeFrame(ByteBuffer payload) throws IOException {
+        ensureOpen();
+        int len = payload.remaining();
+        if (buffer.remaining() < FRAME_HEADER_SIZE + len) {
+            flushBuffer();
+            if (buffer.capacity() < FRAME_HEADER_SIZE + len) grow(FRAME_HEADER_SIZE + len);
+        }
+        buffer.putInt(len);
+        buffer.put(payload);
+        frameCount++;
+    }
+
+    public void writeFrame(byte [] payload) throws IOException {
+        writeFrame(ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * @return number of frames written
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return number of bytes of all frames written so far, including the ones still buffered
+     */
+    public long position() {
+        return bytesWritten + buffer.position();
+    }
+
+    /**
+     * @return number of bytes written to the underlying stream, frames still buffered are not counted
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        flushBuffer();
+        if (outputStream != null) outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        try {
+            flushBuffer();
+            if (outputStream != null) outputStream.flush();
+        } finally {
+            closed = true;
+            if (outputStream != null) {
+                outputStream.close();
+            } else {
+                channel.close();
+            }
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (buffer.position() == 0) return;
+        if (outputStream != null) {
+            outputStream.write(buffer.array(), buffer.arrayOffset(), buffer.position());
+            bytesWritten += buffer.position();
+            buffer.clear();
+        } else {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                bytesWritten += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    private void grow(int required) {
+        int capacity = buffer.capacity();
+        while (capacity < required) {
+            capacity = capacity << 1;
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        bigger.put(buffer);
+        buffer = bigger;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) throw new IOException("Stream closed");
+    }
+}
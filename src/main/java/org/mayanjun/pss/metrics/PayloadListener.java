@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.metrics;
+
+import org.mayanjun.pss.payload.PayloadDescriptor;
+
+/**
+ * Instrumentation hook called by the codec for the payloads of one descriptor id, see
+ * {@linkplain org.mayanjun.pss.payload.Payloads#setListener(int, PayloadListener)}.
+ * It is called in the serializing or deserializing thread, so it must be thread safe, fast and must not throw.
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public interface PayloadListener {
+
+    /**
+     * Listener doing nothing, returned for the descriptors without a listener
+     */
+    PayloadListener NOOP = new PayloadListener() {
+        @Override
+        public void serialized(PayloadDescriptor descriptor, int bytes, int nullFields, long nanos) {
+        }
+
+        @Override
+        public void deserialized(PayloadDescriptor descriptor, int bytes, int nullFields, long nanos) {
+        }
+
+        @Override
+        public void failed(PayloadDescriptor descriptor, boolean serializing, Exception error) {
+        }
+    };
+
+    /**
+     * A payload has been serialized
+     * @param descriptor descriptor
+     * @param bytes serialized size
+     * @param nullFields number of null fields
+     * @param nanos elapsed time
+     */
+    void serialized(PayloadDescriptor descriptor, int bytes, int nullFields, long nanos);
+
+    /**
+     * A payload has been deserialized
+     * @param descriptor descriptor
+     * @param bytes serialized size
+     * @param nullFields number of null fields
+     * @param nanos elapsed time
+     */
+    void deserialized(PayloadDescriptor descriptor, int bytes, int nullFields, long nanos);
+
+    /**
+     * Serializing or deserializing a payload failed
+     * @param descriptor descriptor
+     * @param serializing true when serializing
+     * @param error the exception thrown to the caller
+     */
+    void failed(PayloadDescriptor descriptor, boolean serializing, Exception error);
+}
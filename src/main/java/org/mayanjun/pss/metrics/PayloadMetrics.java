@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.metrics;
+
+import org.mayanjun.pss.payload.PayloadDescriptor;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Listener counting records, bytes, null fields and errors, with latency histograms in nanoseconds.
+ * One instance is usually registered per descriptor id; it may also be shared by several ids to get totals.
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public class PayloadMetrics implements PayloadListener {
+
+    private final LongAdder serializedRecords = new LongAdder();
+    private final LongAdder serializedBytes = new LongAdder();
+    private final LongAdder serializeErrors = new LongAdder();
+
+    private final LongAdder deserializedRecords = new LongAdder();
+    private final LongAdder deserializedBytes = new LongAdder();
+    private final LongAdder deserializeErrors = new LongAdder();
+
+    private final LongAdder fields = new LongAdder();
+    private final LongAdder nullFields = new LongAdder();
+
+    private final LatencyHistogram serializeLatency = new LatencyHistogram();
+    private final LatencyHistogram deserializeLatency = new LatencyHistogram();
+
+    @Override
+    public void serialized(PayloadDescriptor descriptor, int bytes, int nullFields, long nanos) {
+        serializedRecords.increment();
+        serializedBytes.add(bytes);
+        countFields(descriptor, nullFields);
+        serializeLatency.record(nanos);
+    }
+
+    @Override
+    public void deserialized(PayloadDescriptor descriptor, int bytes, int nullFields, long nanos) {
+        deserializedRecords.increment();
+        deserializedBytes.add(bytes);
+        countFields(descriptor, nullFields);
+        deserializeLatency.record(nanos);
+    }
+
+    @Override
+    public void failed(PayloadDescriptor descriptor, boolean serializing, Exception error) {
+        if (serializing) {
+            serializeErrors.increment();
+        } else {
+            deserializeErrors.increment();
+        }
+    }
+
+    private void countFields(PayloadDescriptor descriptor, int nulls) {
+        fields.add(descriptor.getFieldDescriptors().size());
+        nullFields.add(nulls);
+    }
+
+    public long getSerializedRecords() {
+        return serializedRecords.sum();
+    }
+
+    public long getSerializedBytes() {
+        return serializedBytes.sum();
+    }
+
+    public long getSerializeErrors() {
+        return serializeErrors.sum();
+    }
+
+    public long getDeserializedRecords() {
+        return deserializedRecords.sum();
+    }
+
+    public long getDeserializedBytes() {
+        return deserializedBytes.sum();
+    }
+
+    public long getDeserializeErrors() {
+        return deserializeErrors.sum();
+    }
+
+    /**
+     * @return number of null fields out of all fields of the serialized and deserialized records, 0 if none
+     */
+    public double getNullFieldRatio() {
+        long total = fields.sum();
+        return total == 0 ? 0 : (double) nullFields.sum() / total;
+    }
+
+    public LatencyHistogram getSerializeLatency() {
+        return serializeLatency;
+    }
+
+    public LatencyHistogram getDeserializeLatency() {
+        return deserializeLatency;
+    }
+
+    /**
+     * Clear all counters and histograms
+     */
+    public void reset() {
+        serializedRecords.reset();
+        serializedBytes.reset();
+        serializeErrors.reset();
+        deserializedRecords.reset();
+        deserializedBytes.reset();
+        deserializeErrors.reset();
+        fields.reset();
+        nullFields.reset();
+        serializeLatency.reset();
+        deserializeLatency.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "PayloadMetrics{serialized=" + getSerializedRecords() + "/" + getSerializedBytes() + "B"
+                + ", deserialized=" + getDeserializedRecords() + "/" + getDeserializedBytes() + "B"
+                + ", errors=" + getSerializeErrors() + "/" + getDeserializeErrors()
+                + ", nullFieldRatio=" + getNullFieldRatio()
+                + ", serializeLatency={" + serializeLatency + "}, deserializeLatency={" + deserializeLatency + "}}";
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.payload;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Serialized payloads stored back to back in one array, with an offset table: payload i is the bytes between
+ * offset(i) and offset(i + 1). Returned by {@linkplain Payloads#serializeAll(PayloadDescriptor, java.util.List)}.
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public class EncodedPayloads {
+
+    private final byte data[];
+
+    private final int offsets[];
+
+    /**
+     * @param data serialized payloads
+     * @param offsets start of every payload followed by the end of the last one, non decreasing
+     */
+    public EncodedPayloads(byte data[], int offsets[]) {
+        if (offsets.length == 0) throw new IllegalArgumentException("Offset table is empty");
+        for (int i = 0; i < offsets.length; i++) {
+            if (offsets[i] < 0 || offsets[i] > data.length || (i > 0 && offsets[i] < offsets[i - 1])) {
+                throw new IllegalArgumentException("Invalid offset " + offsets[i] + " at " + i);
+            }
+        }
+        this.data = data;
+        this.offsets = offsets;
+    }
+
+    /**
+     * @return number of payloads
+     */
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    public int offset(int index) {
+        return offsets[check(index)];
+    }
+
+    public int length(int index) {
+        return offsets[check(index) + 1] - offsets[index];
+    }
+
+    /**
+     * Return the serialized bytes of a payload
+     * @param index payload index
+     * @return new array
+     */
+    public byte[] bytes(int index) {
+        return Arrays.copyOfRange(data, offset(index), offsets[index + 1]);
+    }
+
+    /**
+     * Return a buffer over the serialized bytes of a payload, sharing the data
+     * @param index payload index
+     * @return buffer positioned at the payload and limited to its end
+     */
+    public ByteBuffer buffer(int index) {
+        int offset = offset(index);
+        return ByteBuffer.wrap(data, offset, offsets[index + 1] - offset);
+    }
+
+    /**
+     * @return the array holding all payloads, not copied
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return total number of bytes of the payloads
+     */
+    public int getLength() {
+        return offsets[offsets.length - 1] - offsets[0];
+    }
+
+    private int check(int index) {
+        if (index < 0 || index >= offsets.length - 1) {
+            throw new IndexOutOfBoundsException("Payload " + index + " of " + (offsets.length - 1));
+        }
+        return index;
+    }
+}
@@ -35,6 +35,11 @@ public class FieldDescriptor implements Serializable {
 
     private FieldType type;
 
+    /**
+     * Value of the field when reading data of a schema version without it
+     */
+    private Object defaultValue;
+
     private Map<String, Object> attributes;
 
     public FieldDescriptor() {
@@ -88,6 +93,19 @@ public class FieldDescriptor implements Serializable {
         this.type = type;
     }
 
+    public Object getDefaultValue() {
+        return defaultValue;
+    }
+
+    /**
+     * Set the value read for this field from the payloads of a schema version without it, null by default.
+     * See {@linkplain VersionMapping}.
+     * @param defaultValue value of the type of the field
+     */
+    public void setDefaultValue(Object defaultValue) {
+        this.defaultValue = defaultValue;
+    }
+
     public Map<String, Object> getAttributes() {
         return attributes;
     }
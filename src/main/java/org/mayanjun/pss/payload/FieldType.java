@@ -21,8 +21,8 @@ import org.mayanjun.pss.SerializeException;
 import org.mayanjun.pss.util.BinaryUtils;
 import org.mayanjun.pss.util.SerializeUtils;
 
+import java.math.BigInteger;
 import java.nio.ByteBuffer;
-import java.nio.charset.Charset;
 import java.util.Date;
 
 /**
@@ -230,9 +230,7 @@ public enum FieldType implements TypeSerializer {
 
         @Override
         public Object deserialize(ByteBuffer buffer) throws DeserializeException {
-            byte bytes[] = SerializeUtils.readLengthBytes(buffer);
-            if (bytes == null) return null;
-            return new String(bytes, Charset.forName("UTF-8"));
+            return Payloads.readString(buffer);
         }
 
         @Override
@@ -252,6 +250,110 @@ public enum FieldType implements TypeSerializer {
             return SerializeUtils.readLengthBytes(buffer);
         }
 
+        @Override
+        public Object unsignedValue(Object value) {
+            return value;
+        }
+    }),
+
+    // 变长整数, 以 LEB128 编码: 每个字节 7 位, 低位在前, 除最后一个字节外最高位为 1
+    // VARINT32/UVARINT32 写入 32 位无符号值(负数占 5 个字节), ZIGZAG32/ZIGZAG64 适合可能为负的小数值
+    VARINT32(-1, false, new TypeSerializer() {
+        @Override
+        public byte[] serialize(Object value) throws SerializeException {
+            return SerializeUtils.varint32ToBytes(value, false);
+        }
+
+        @Override
+        public Object deserialize(ByteBuffer buffer) throws DeserializeException {
+            return (int) BinaryUtils.getVarint(buffer);
+        }
+
+        @Override
+        public Object unsignedValue(Object value) {
+            return value;
+        }
+    }),
+
+    UVARINT32(-1, true, new TypeSerializer() {
+        @Override
+        public byte[] serialize(Object value) throws SerializeException {
+            return SerializeUtils.varint32ToBytes(value, false);
+        }
+
+        @Override
+        public Object deserialize(ByteBuffer buffer) throws DeserializeException {
+            return (int) BinaryUtils.getVarint(buffer);
+        }
+
+        @Override
+        public Object unsignedValue(Object value) {
+            return BinaryUtils.uint32ToLong((Integer) value);
+        }
+    }),
+
+    ZIGZAG32(-1, false, new TypeSerializer() {
+        @Override
+        public byte[] serialize(Object value) throws SerializeException {
+            return SerializeUtils.varint32ToBytes(value, true);
+        }
+
+        @Override
+        public Object deserialize(ByteBuffer buffer) throws DeserializeException {
+            return (int) BinaryUtils.zigzagDecode(BinaryUtils.getVarint(buffer));
+        }
+
+        @Override
+        public Object unsignedValue(Object value) {
+            return value;
+        }
+    }),
+
+    VARINT64(-1, false, new TypeSerializer() {
+        @Override
+        public byte[] serialize(Object value) throws SerializeException {
+            return SerializeUtils.varint64ToBytes(value, false);
+        }
+
+        @Override
+        public Object deserialize(ByteBuffer buffer) throws DeserializeException {
+            return BinaryUtils.getVarint(buffer);
+        }
+
+        @Override
+        public Object unsignedValue(Object value) {
+            return value;
+        }
+    }),
+
+    UVARINT64(-1, true, new TypeSerializer() {
+        @Override
+        public byte[] serialize(Object value) throws SerializeException {
+            return SerializeUtils.varint64ToBytes(value, false);
+        }
+
+        @Override
+        public Object deserialize(ByteBuffer buffer) throws DeserializeException {
+            return BinaryUtils.getVarint(buffer);
+        }
+
+        @Override
+        public Object unsignedValue(Object value) {
+            return unsigned64((Long) value);
+        }
+    }),
+
+    ZIGZAG64(-1, false, new TypeSerializer() {
+        @Override
+        public byte[] serialize(Object value) throws SerializeException {
+            return SerializeUtils.varint64ToBytes(value, true);
+        }
+
+        @Override
+        public Object deserialize(ByteBuffer buffer) throws DeserializeException {
+            return BinaryUtils.zigzagDecode(BinaryUtils.getVarint(buffer));
+        }
+
         @Override
         public Object unsignedValue(Object value) {
             return value;
@@ -259,6 +361,13 @@ public enum FieldType implements TypeSerializer {
     });
 
 
+    private static final BigInteger TWO_64 = BigInteger.ONE.shiftLeft(64);
+
+    private static BigInteger unsigned64(long value) {
+        BigInteger v = BigInteger.valueOf(value);
+        return value >= 0 ? v : v.add(TWO_64);
+    }
+
     FieldType(int size, boolean unsigned, TypeSerializer serializer) {
         this.size = size;
         this.serializer = serializer;
@@ -280,6 +389,214 @@ public enum FieldType implements TypeSerializer {
         return serializer.unsignedValue(value);
     }
 
+    /**
+     * Read an integral, DATE, FLOAT or DOUBLE value at the current position of the buffer without boxing.
+     * Integral values are sign extended (see {@linkplain #unsignedLong(long)}), DATE values are epoch
+     * milliseconds and floating point values are truncated.
+     * @param buffer big-endian buffer
+     * @return value
+     */
+    public long readLong(ByteBuffer buffer) {
+        if (size < 0 && isVarint()) return fromVarint(BinaryUtils.getVarint(buffer));
+        int index = buffer.position();
+        long value = readLong(buffer, index);
+        buffer.position(index + size);
+        return value;
+    }
+
+    /**
+     * Read an integral, DATE, FLOAT or DOUBLE value at an absolute offset of the buffer without boxing
+     * @param buffer big-endian buffer
+     * @param index offset of the value
+     * @return value
+     * @see #readLong(ByteBuffer)
+     */
+    public long readLong(ByteBuffer buffer, int index) {
+        switch (this) {
+            case INT8:
+            case UINT8:
+                return buffer.get(index);
+            case INT16:
+            case UINT16:
+                return buffer.getShort(index);
+            case INT32:
+            case UINT32:
+                return buffer.getInt(index);
+            case INT64:
+            case DATE:
+                return buffer.getLong(index);
+            case FLOAT:
+                return (long) buffer.getFloat(index);
+            case DOUBLE:
+                return (long) buffer.getDouble(index);
+            case VARINT32:
+            case UVARINT32:
+            case ZIGZAG32:
+            case VARINT64:
+            case UVARINT64:
+            case ZIGZAG64:
+                return fromVarint(BinaryUtils.getVarint(buffer, index));
+            default:
+                throw new IllegalArgumentException(this + " is not a numeric type");
+        }
+    }
+
+    /**
+     * Read a numeric value at the current position of the buffer as double without boxing
+     * @param buffer big-endian buffer
+     * @return value
+     */
+    public double readDouble(ByteBuffer buffer) {
+        if (size < 0) return readLong(buffer);
+        int index = buffer.position();
+        double value = readDouble(buffer, index);
+        buffer.position(index + size);
+        return value;
+    }
+
+    /**
+     * Read a numeric value at an absolute offset of the buffer as double without boxing.
+     * Integral values are converted from their signed value.
+     * @param buffer big-endian buffer
+     * @param index offset of the value
+     * @return value
+     */
+    public double readDouble(ByteBuffer buffer, int index) {
+        switch (this) {
+            case FLOAT:
+                return buffer.getFloat(index);
+            case DOUBLE:
+                return buffer.getDouble(index);
+            default:
+                return readLong(buffer, index);
+        }
+    }
+
+    /**
+     * Read a BOOL value at an absolute offset of the buffer
+     * @param buffer buffer
+     * @param index offset of the value
+     * @return value
+     */
+    public boolean readBoolean(ByteBuffer buffer, int index) {
+        if (this != BOOL) throw new IllegalArgumentException(this + " is not a boolean type");
+        return buffer.get(index) > 0;
+    }
+
+    /**
+     * Convert a value returned by {@linkplain #readLong(ByteBuffer)} to the unsigned value of this type.
+     * Signed types return the value unchanged.
+     * @param value signed value
+     * @return unsigned value
+     */
+    public long unsignedLong(long value) {
+        switch (this) {
+            case UINT8:
+                return value & 0xFFL;
+            case UINT16:
+                return value & 0xFFFFL;
+            case UINT32:
+            case UVARINT32:
+                return value & 0xFFFFFFFFL;
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Return the number of bytes of the value at an absolute offset of the buffer
+     * @param buffer big-endian buffer
+     * @param index offset of the value
+     * @return encoded length
+     */
+    public int encodedLength(ByteBuffer buffer, int index) {
+        if (size >= 0) return size;
+        if (isVarint()) return BinaryUtils.varintSize(buffer, index);
+        return 2 + BinaryUtils.uint16ToInt(buffer.getShort(index));
+    }
+
+    /**
+     * Return the number of bytes written for an integral value of this type
+     * @param value value
+     * @return encoded length
+     */
+    public int encodedLength(long value) {
+        if (size >= 0) return size;
+        if (isVarint()) return BinaryUtils.varintLength(toVarint(value));
+        throw new IllegalArgumentException(this + " is not a numeric type");
+    }
+
+    /**
+     * Map a value to the unsigned varint written for it: 32 bit types keep the low 32 bits, the zigzag types are zigzag encoded
+     * @param value value
+     * @return varint
+     */
+    public long toVarint(long value) {
+        switch (this) {
+            case VARINT32:
+            case UVARINT32:
+                return value & 0xFFFFFFFFL;
+            case ZIGZAG32:
+                return BinaryUtils.zigzagEncode((int) value) & 0xFFFFFFFFL;
+            case ZIGZAG64:
+                return BinaryUtils.zigzagEncode(value);
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Reverse of {@linkplain #toVarint(long)}, 32 bit values are sign extended
+     * @param varint varint
+     * @return value
+     */
+    public long fromVarint(long varint) {
+        switch (this) {
+            case VARINT32:
+            case UVARINT32:
+                return (int) varint;
+            case ZIGZAG32:
+                return BinaryUtils.zigzagDecode((int) varint);
+            case ZIGZAG64:
+                return BinaryUtils.zigzagDecode(varint);
+            default:
+                return varint;
+        }
+    }
+
+    /**
+     * @return true for the integral types, including the varint ones, and DATE
+     */
+    public boolean isIntegral() {
+        switch (this) {
+            case FLOAT:
+            case DOUBLE:
+            case BOOL:
+            case STRING:
+            case BYTES:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * @return true for the variable length integral types
+     */
+    public boolean isVarint() {
+        switch (this) {
+            case VARINT32:
+            case UVARINT32:
+            case ZIGZAG32:
+            case VARINT64:
+            case UVARINT64:
+            case ZIGZAG64:
+                return true;
+            default:
+                return false;
+        }
+    }
+
     private boolean unsigned;
 
     /**
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.payload;
+
+import org.mayanjun.pss.DeserializeException;
+import org.mayanjun.pss.SerializeException;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork-join implementation of {@linkplain Payloads#serializeAll(PayloadDescriptor, List)} and
+ * {@linkplain Payloads#deserializeAll(PayloadDescriptor, EncodedPayloads)}. A list is split into ranges of
+ * consecutive payloads; serializing makes two passes, one computing the size of every payload so the offset
+ * table and the output array can be allocated once, and one writing every range at its offsets.
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+final class ParallelPayloads {
+
+    private ParallelPayloads() {
+    }
+
+    static EncodedPayloads serializeAll(PayloadDescriptor payloadDescriptor, List<?> payloads, ForkJoinPool pool, int threshold) throws SerializeException {
+        int count = payloads.size();
+        int offsets[] = new int[count + 1];
+        boolean parallel = isParallel(count, threshold, pool);
+        int chunk = chunkSize(count, pool);
+
+        // offsets[i + 1] receives the size of payload i, then the table is turned into offsets
+        Range sizes = new Range() {
+            @Override
+            public void run(int from, int to) throws Exception {
+                PayloadCodec<?> codec = null;
+                for (int i = from; i < to; i++) {
+                    Object payload = payloads.get(i);
+                    codec = codec(payloadDescriptor, codec, payload);
+                    offsets[i + 1] = codec.serializedSize(payload);
+                }
+            }
+        };
+        invoke(new Task(sizes, 0, count, chunk), parallel, pool);
+        long total = 0;
+        for (int i = 1; i <= count; i++) {
+            total += offsets[i];
+            if (total > Integer.MAX_VALUE - 8) throw new SerializeException("Payloads too large: more than 2 GiB");
+            offsets[i] = (int) total;
+        }
+
+        byte data[] = new byte[(int) total];
+        Range writes = new Range() {
+            @Override
+            public void run(int from, int to) throws Exception {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                PayloadCodec<?> codec = null;
+                for (int i = from; i < to; i++) {
+                    Object payload = payloads.get(i);
+                    codec = codec(payloadDescriptor, codec, payload);
+                    buffer.limit(offsets[i + 1]).position(offsets[i]);
+                    codec.serialize(payload, buffer);
+                }
+            }
+        };
+        invoke(new Task(writes, 0, count, chunk), parallel, pool);
+        return new EncodedPayloads(data, offsets);
+    }
+
+    static List<Payload> deserializeAll(PayloadDescriptor payloadDescriptor, EncodedPayloads payloads, ForkJoinPool pool, int threshold) throws DeserializeException {
+        int count = payloads.size();
+        Payload result[] = new Payload[count];
+        Range range = new Range() {
+            @Override
+            public void run(int from, int to) throws Exception {
+                for (int i = from; i < to; i++) {
+                    result[i] = Payloads.deserialize(payloadDescriptor, payloads.buffer(i));
+                }
+            }
+        };
+        invokeDeserialize(new Task(range, 0, count, chunkSize(count, pool)), isParallel(count, threshold, pool), pool);
+        return Arrays.asList(result);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> List<T> deserializeAll(PayloadDescriptor payloadDescriptor, EncodedPayloads payloads, Class<T> payloadClass, ForkJoinPool pool, int threshold) throws DeserializeException {
+        int count = payloads.size();
+        PayloadCodec<T> codec = Payloads.codec(payloadDescriptor, payloadClass);
+        Object result[] = new Object[count];
+        Range range = new Range() {
+            @Override
+            public void run(int from, int to) throws Exception {
+                for (int i = from; i < to; i++) {
+                    result[i] = codec.deserialize(payloads.buffer(i));
+                }
+            }
+        };
+        invokeDeserialize(new Task(range, 0, count, chunkSize(count, pool)), isParallel(count, threshold, pool), pool);
+        return (List<T>) Arrays.asList(result);
+    }
+
+    private static PayloadCodec<?> codec(PayloadDescriptor payloadDescriptor, PayloadCodec<?> codec, Object payload) throws SerializeException {
+        if (payload == null) throw new SerializeException("No payload specified");
+        if (codec != null && codec.getPayloadClass() == payload.getClass()) return codec;
+        return Payloads.codec(payloadDescriptor, payload.getClass());
+    }
+
+    private static boolean isParallel(int count, int threshold, ForkJoinPool pool) {
+        return count >= threshold && pool.getParallelism() > 1;
+    }
+
+    /**
+     * About 4 ranges per worker so that uneven payloads still balance
+     */
+    private static int chunkSize(int count, ForkJoinPool pool) {
+        return Math.max(256, count / (pool.getParallelism() * 4) + 1);
+    }
+
+    private static void invoke(Task task, boolean parallel, ForkJoinPool pool) throws SerializeException {
+        Throwable cause = execute(task, parallel, pool);
+        if (cause == null) return;
+        if (cause instanceof SerializeException) throw (SerializeException) cause;
+        throw new SerializeException(cause);
+    }
+
+    private static void invokeDeserialize(Task task, boolean parallel, ForkJoinPool pool) throws DeserializeException {
+        Throwable cause = execute(task, parallel, pool);
+        if (cause == null) return;
+        if (cause instanceof DeserializeException) throw (DeserializeException) cause;
+        throw new DeserializeException(cause);
+    }
+
+    /**
+     * @return the first exception thrown by a range, null if all succeeded
+     */
+    private static Throwable execute(Task task, boolean parallel, ForkJoinPool pool) {
+        try {
+            if (parallel) {
+                pool.invoke(task);
+            } else {
+                task.range.run(task.from, task.to);
+            }
+            return null;
+        } catch (TaskException e) {
+            return e.getCause();
+        } catch (RuntimeException e) {
+            // the pool may rethrow a copy of the exception of another thread, caused by the original one
+            for (Throwable t = e; t != null; t = t.getCause()) {
+                if (t instanceof TaskException) return t.getCause();
+            }
+            return e;
+        } catch (Exception e) {
+            return e;
+        }
+    }
+
+    /**
+     * Work done on a range of payloads
+     */
+    private interface Range {
+
+        void run(int from, int to) throws Exception;
+    }
+
+    /**
+     * Runs a range, split in halves until it is no larger than the chunk size
+     */
+    private static final class Task extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Range range;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        Task(Range range, int from, int to, int chunk) {
+            this.range = range;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunk) {
+                try {
+                    range.run(from, to);
+                } catch (Exception e) {
+                    throw new TaskException(e);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Task(range, from, middle, chunk), new Task(range, middle, to, chunk));
+        }
+    }
+
+    private static final class TaskException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        TaskException(Exception cause) {
+            super(cause);
+        }
+    }
+}
@@ -18,12 +18,17 @@ package org.mayanjun.pss.payload;
 
 import org.mayanjun.pss.util.BinaryUtils;
 
+import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
 /**
- * Represent  a payload
+ * Represent  a payload.
+ * <p>A payload returned by {@linkplain Payloads#deserialize(PayloadDescriptor, byte[])} keeps its numeric values
+ * unboxed: the primitive getters such as {@linkplain #getInt(String)} or {@linkplain #getEpochMillis(String)}
+ * read them without creating wrapper objects, and the {@linkplain FieldValue} map is only built when
+ * {@linkplain #getDataFieldMap()} is called.</p>
  * @since 2020-03-21
  * @author mayanjun
  */
@@ -31,15 +36,40 @@ public class Payload {
 
     private int descriptorId;
 
-    private Map<String, FieldValue> dataFieldMap = new LinkedHashMap<String, FieldValue>();
+    private Map<String, FieldValue> dataFieldMap;
+
+    /**
+     * Decoded values, null once the field map is built
+     */
+    private PayloadLayout layout;
+
+    /**
+     * Integral and DATE values as long, FLOAT and DOUBLE values as double bits, BOOL values as 0 or 1
+     */
+    private long values[];
+
+    /**
+     * STRING and BYTES values
+     */
+    private Object objects[];
+
+    private byte nullFlags[];
 
     public Payload(int descriptorId) {
         this.descriptorId = descriptorId;
     }
 
+    Payload(int descriptorId, PayloadLayout layout, long values[], Object objects[], byte nullFlags[]) {
+        this.descriptorId = descriptorId;
+        this.layout = layout;
+        this.values = values;
+        this.objects = objects;
+        this.nullFlags = nullFlags;
+    }
+
     public Payload addDataField(FieldValue fieldValue) {
         if (fieldValue != null) {
-            dataFieldMap.put(fieldValue.getFieldDescriptor().getName(), fieldValue);
+            getDataFieldMap().put(fieldValue.getFieldDescriptor().getName(), fieldValue);
         }
         return this;
     }
@@ -49,9 +79,218 @@ public class Payload {
     }
 
     public Map<String, FieldValue> getDataFieldMap() {
+        if (dataFieldMap == null) {
+            Map<String, FieldValue> map = new LinkedHashMap<String, FieldValue>();
+            if (layout != null) {
+                for (int i = 0; i < layout.fields.length; i++) {
+                    FieldDescriptor fd = layout.fields[i];
+                    Object value = boxedValue(i);
+                    if (value != null && fd.getType().isUnsigned()) {
+                        map.put(fd.getName(), new UnsignedFieldValue(fd, value));
+                    } else {
+                        map.put(fd.getName(), new FieldValue(fd, value));
+                    }
+                }
+                layout = null;
+                values = null;
+                objects = null;
+                nullFlags = null;
+            }
+            dataFieldMap = map;
+        }
         return dataFieldMap;
     }
 
+    /**
+     * Return true if the payload has the field
+     * @param name field name
+     * @return true if present
+     */
+    public boolean hasField(String name) {
+        if (layout != null) return layout.indexOf(name) >= 0;
+        return getDataFieldMap().containsKey(name);
+    }
+
+    public boolean isNull(String name) {
+        if (layout != null) return isNullAt(index(name));
+        return fieldValue(name).getValue() == null;
+    }
+
+    /**
+     * Return the value of a field as {@linkplain FieldValue#getValue()} does
+     * @param name field name
+     * @return value or null
+     */
+    public Object getValue(String name) {
+        if (layout != null) return boxedValue(index(name));
+        return fieldValue(name).getValue();
+    }
+
+    public byte getByte(String name) {
+        return (byte) getLong(name);
+    }
+
+    public short getShort(String name) {
+        return (short) getLong(name);
+    }
+
+    public int getInt(String name) {
+        return (int) getLong(name);
+    }
+
+    /**
+     * Read an integral or DATE field without boxing, DATE values are returned as epoch milliseconds
+     * @param name field name
+     * @return signed value
+     * @throws IllegalStateException if the field is null
+     */
+    public long getLong(String name) {
+        if (layout != null) {
+            int index = nonNullIndex(name);
+            FieldType type = layout.types[index];
+            if (type == FieldType.FLOAT || type == FieldType.DOUBLE) return (long) Double.longBitsToDouble(values[index]);
+            if (!type.isIntegral()) throw typeError(name, type, "numeric");
+            return values[index];
+        }
+        Object value = nonNullValue(name);
+        if (value instanceof Number) return ((Number) value).longValue();
+        if (value instanceof Date) return ((Date) value).getTime();
+        throw new IllegalArgumentException("Field " + name + " is not a numeric field");
+    }
+
+    public int getUnsignedByte(String name) {
+        return (int) (getLong(name) & 0xFFL);
+    }
+
+    public int getUnsignedShort(String name) {
+        return (int) (getLong(name) & 0xFFFFL);
+    }
+
+    public long getUnsignedInt(String name) {
+        return getLong(name) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Read a DATE field as epoch milliseconds without allocating a {@linkplain Date}
+     */
+    public long getEpochMillis(String name) {
+        return getLong(name);
+    }
+
+    public float getFloat(String name) {
+        return (float) getDouble(name);
+    }
+
+    /**
+     * Read a numeric field without boxing
+     * @param name field name
+     * @return value
+     * @throws IllegalStateException if the field is null
+     */
+    public double getDouble(String name) {
+        if (layout != null) {
+            int index = nonNullIndex(name);
+            FieldType type = layout.types[index];
+            if (type == FieldType.FLOAT || type == FieldType.DOUBLE) return Double.longBitsToDouble(values[index]);
+            if (!type.isIntegral()) throw typeError(name, type, "numeric");
+            return values[index];
+        }
+        Object value = nonNullValue(name);
+        if (value instanceof Number) return ((Number) value).doubleValue();
+        throw new IllegalArgumentException("Field " + name + " is not a numeric field");
+    }
+
+    public boolean getBoolean(String name) {
+        if (layout != null) {
+            int index = nonNullIndex(name);
+            if (layout.types[index] != FieldType.BOOL) throw typeError(name, layout.types[index], "boolean");
+            return values[index] != 0;
+        }
+        Object value = nonNullValue(name);
+        if (value instanceof Boolean) return (Boolean) value;
+        throw new IllegalArgumentException("Field " + name + " is not a boolean field");
+    }
+
+    /**
+     * @return the string, null for a null field
+     */
+    public String getString(String name) {
+        return (String) getValue(name);
+    }
+
+    /**
+     * @return the bytes, null for a null field
+     */
+    public byte[] getBytes(String name) {
+        return (byte[]) getValue(name);
+    }
+
+    private boolean isNullAt(int index) {
+        return (nullFlags[index >>> 3] & (1 << (index & 7))) != 0;
+    }
+
+    private Object boxedValue(int index) {
+        if (isNullAt(index)) return null;
+        long value = values[index];
+        switch (layout.types[index]) {
+            case INT8:
+            case UINT8:
+                return (byte) value;
+            case INT16:
+            case UINT16:
+                return (short) value;
+            case INT32:
+            case UINT32:
+            case VARINT32:
+            case UVARINT32:
+            case ZIGZAG32:
+                return (int) value;
+            case INT64:
+            case VARINT64:
+            case UVARINT64:
+            case ZIGZAG64:
+                return value;
+            case DATE:
+                return new Date(value);
+            case FLOAT:
+                return (float) Double.longBitsToDouble(value);
+            case DOUBLE:
+                return Double.longBitsToDouble(value);
+            case BOOL:
+                return value != 0 ? Boolean.TRUE : Boolean.FALSE;
+            default:
+                return objects[index];
+        }
+    }
+
+    private int index(String name) {
+        int index = layout.indexOf(name);
+        if (index < 0) throw new IllegalArgumentException("No such field: " + name);
+        return index;
+    }
+
+    private int nonNullIndex(String name) {
+        int index = index(name);
+        if (isNullAt(index)) throw new IllegalStateException("Field is null: " + name);
+        return index;
+    }
+
+    private FieldValue fieldValue(String name) {
+        FieldValue fv = getDataFieldMap().get(name);
+        if (fv == null) throw new IllegalArgumentException("No such field: " + name);
+        return fv;
+    }
+
+    private Object nonNullValue(String name) {
+        Object value = fieldValue(name).getValue();
+        if (value == null) throw new IllegalStateException("Field is null: " + name);
+        return value;
+    }
+
+    private static IllegalArgumentException typeError(String name, FieldType type, String expected) {
+        return new IllegalArgumentException("Field " + name + " is " + type + ", not a " + expected + " field");
+    }
+
     @Override
     public String toString() {
         return "Payload {" +
@@ -62,7 +301,7 @@ public class Payload {
     }
 
     private String dataFieldMapToString() {
-        if (dataFieldMap == null) return null;
+        Map<String, FieldValue> dataFieldMap = getDataFieldMap();
         if (dataFieldMap.isEmpty()) return "{}";
         Set<Map.Entry<String, FieldValue>> set = dataFieldMap.entrySet();
         StringBuilder sb = new StringBuilder();
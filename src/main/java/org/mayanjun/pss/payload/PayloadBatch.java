@@ -0,0 +1,710 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.payload;
+
+import org.mayanjun.pss.DeserializeException;
+import org.mayanjun.pss.SerializeException;
+import org.mayanjun.pss.util.BinaryUtils;
+import org.mayanjun.pss.util.SerializeUtils;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A batch of payloads of the same descriptor in columnar form. On the wire a batch is
+ * <pre>
+ * int32 descriptor id | int32 row count | uint16 column count | column...
+ * </pre>
+ * with one column per field, in field order:
+ * <pre>
+ * int8 encoding | int32 body length | null bitmap, one bit per row | values of the non-null rows
+ * </pre>
+ * With the plain encoding values are written as in a single payload, so a fixed-size column is a contiguous
+ * big-endian array; DATE and 64 bit integral columns may be delta-of-delta encoded and STRING columns dictionary
+ * encoded instead (see {@linkplain PayloadBatchOptions}).
+ * The descriptor id is written once per batch instead of once per record, and a decoded batch keeps each
+ * column in a primitive array: <code>long[]</code> for integral and DATE fields, <code>double[]</code> for
+ * FLOAT and DOUBLE, <code>boolean[]</code> for BOOL and <code>Object[]</code> for STRING and BYTES.
+ * <p>A decoded batch is immutable and may be shared between threads.</p>
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public final class PayloadBatch {
+
+    /**
+     * Column encoding: null bitmap followed by the values as they are written in a payload
+     */
+    public static final byte ENCODING_PLAIN = 0;
+
+    /**
+     * Column encoding of DATE and 64 bit integral columns: null bitmap followed by the delta-of-delta
+     * encoded values of the non-null rows, see {@linkplain PayloadBatchOptions#deltaOfDelta(String...)}
+     */
+    public static final byte ENCODING_DELTA_OF_DELTA = 1;
+
+    /**
+     * Column encoding of STRING columns: null bitmap, the distinct values of the batch as a varint count followed
+     * by length-prefixed UTF-8 strings, then the varint index in that dictionary of each non-null row,
+     * see {@linkplain PayloadBatchOptions#dictionary(String...)}
+     */
+    public static final byte ENCODING_DICTIONARY = 2;
+
+    private static final PayloadBatchOptions DEFAULT_OPTIONS = new PayloadBatchOptions();
+
+    /**
+     * Size of the batch header
+     */
+    static final int HEADER_SIZE = 10;
+
+    /**
+     * Size of the encoding and length of a column
+     */
+    static final int COLUMN_HEADER_SIZE = 5;
+
+    private final PayloadDescriptor descriptor;
+
+    private final PayloadLayout layout;
+
+    private final int rowCount;
+
+    /**
+     * Null bitmap of each column
+     */
+    private final byte nulls[][];
+
+    /**
+     * long[], double[], boolean[] or Object[] of each column
+     */
+    private final Object columns[];
+
+    private PayloadBatch(PayloadDescriptor descriptor, PayloadLayout layout, int rowCount, byte nulls[][], Object columns[]) {
+        this.descriptor = descriptor;
+        this.layout = layout;
+        this.rowCount = rowCount;
+        this.nulls = nulls;
+        this.columns = columns;
+    }
+
+    /**
+     * Return the exact number of bytes {@linkplain #encode(PayloadDescriptor, Collection, ByteBuffer)} will write
+     * @param payloadDescriptor pd
+     * @param payloads payloads
+     * @return encoded size
+     * @throws SerializeException
+     */
+    public static int encodedSize(PayloadDescriptor payloadDescriptor, Collection<?> payloads) throws SerializeException {
+        return encodedSize(payloadDescriptor, payloads, DEFAULT_OPTIONS);
+    }
+
+    /**
+     * Return the exact number of bytes {@linkplain #encode(PayloadDescriptor, Collection, PayloadBatchOptions, ByteBuffer)} will write
+     * @param payloadDescriptor pd
+     * @param payloads payloads
+     * @param options column encodings
+     * @return encoded size
+     * @throws SerializeException
+     */
+    public static int encodedSize(PayloadDescriptor payloadDescriptor, Collection<?> payloads, PayloadBatchOptions options) throws SerializeException {
+        PayloadLayout layout = payloadDescriptor.layout();
+        byte encodings[] = encodings(layout, options);
+        int rows = payloads.size();
+        int bitmapSize = (rows + 7) >>> 3;
+        int size = HEADER_SIZE + layout.fields.length * (COLUMN_HEADER_SIZE + bitmapSize);
+        long values[] = null;
+        for (int i = 0; i < layout.fields.length; i++) {
+            PayloadCodec<?> codec = null;
+            if (encodings[i] == ENCODING_DELTA_OF_DELTA) {
+                if (values == null) values = new long[rows];
+                int count = 0;
+                for (Object payload : payloads) {
+                    if (payload == null) throw new SerializeException("Null payload in batch");
+                    codec = codec(payloadDescriptor, codec, payload);
+                    if (codec.getLong(i, payload, values, count)) count++;
+                }
+                size += DeltaOfDelta.encodedSize(values, count);
+            } else if (encodings[i] == ENCODING_DICTIONARY) {
+                size += StringDictionary.build(payloadDescriptor, payloads, i).encodedSize();
+            } else {
+                for (Object payload : payloads) {
+                    if (payload == null) throw new SerializeException("Null payload in batch");
+                    codec = codec(payloadDescriptor, codec, payload);
+                    size += codec.fieldSize(i, payload);
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Encode the payloads to a new array of the exact size
+     * @param payloadDescriptor pd
+     * @param payloads payloads, all serialized with this descriptor
+     * @return encoded batch
+     * @throws SerializeException
+     */
+    public static byte[] encode(PayloadDescriptor payloadDescriptor, Collection<?> payloads) throws SerializeException {
+        return encode(payloadDescriptor, payloads, DEFAULT_OPTIONS);
+    }
+
+    /**
+     * Encode the payloads to a new array of the exact size
+     * @param payloadDescriptor pd
+     * @param payloads payloads, all serialized with this descriptor
+     * @param options column encodings
+     * @return encoded batch
+     * @throws SerializeException
+     */
+    public static byte[] encode(PayloadDescriptor payloadDescriptor, Collection<?> payloads, PayloadBatchOptions options) throws SerializeException {
+        byte bytes[] = new byte[encodedSize(payloadDescriptor, payloads, options)];
+        encode(payloadDescriptor, payloads, options, ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    /**
+     * Encode the payloads into the buffer with plain columns
+     * @see #encode(PayloadDescriptor, Collection, PayloadBatchOptions, ByteBuffer)
+     */
+    public static void encode(PayloadDescriptor payloadDescriptor, Collection<?> payloads, ByteBuffer buffer) throws SerializeException {
+        encode(payloadDescriptor, payloads, DEFAULT_OPTIONS, buffer);
+    }
+
+    /**
+     * Encode the payloads into the buffer, starting at its current position. On failure the position
+     * of the buffer is left unchanged.
+     * @param payloadDescriptor pd
+     * @param payloads payloads, all serialized with this descriptor
+     * @param options column encodings
+     * @param buffer heap or direct buffer with enough remaining space
+     * @throws SerializeException if a value can't be converted or the buffer overflows
+     */
+    public static void encode(PayloadDescriptor payloadDescriptor, Collection<?> payloads, PayloadBatchOptions options,
+                              ByteBuffer buffer) throws SerializeException {
+        PayloadLayout layout = payloadDescriptor.layout();
+        byte encodings[] = encodings(layout, options);
+        int rows = payloads.size();
+        int bitmapSize = (rows + 7) >>> 3;
+        int start = buffer.position();
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        try {
+            buffer.putInt(payloadDescriptor.getId());
+            buffer.putInt(rows);
+            buffer.putShort((short) layout.fields.length);
+            long values[] = null;
+            for (int i = 0; i < layout.fields.length; i++) {
+                buffer.put(encodings[i]);
+                int lengthPosition = buffer.position();
+                buffer.putInt(0);
+                int bitmapPosition = buffer.position();
+                for (int b = 0; b < bitmapSize; b++) {
+                    buffer.put((byte) 0);
+                }
+                PayloadCodec<?> codec = null;
+                int row = 0;
+                if (encodings[i] == ENCODING_DELTA_OF_DELTA) {
+                    if (values == null) values = new long[rows];
+                    int count = 0;
+                    for (Object payload : payloads) {
+                        if (payload == null) throw new SerializeException("Null payload in batch");
+                        codec = codec(payloadDescriptor, codec, payload);
+                        if (codec.getLong(i, payload, values, count)) {
+                            count++;
+                        } else {
+                            setNull(buffer, bitmapPosition, row);
+                        }
+                        row++;
+                    }
+                    DeltaOfDelta.encode(values, count, buffer);
+                } else if (encodings[i] == ENCODING_DICTIONARY) {
+                    StringDictionary.build(payloadDescriptor, payloads, i).write(buffer, bitmapPosition);
+                } else {
+                    for (Object payload : payloads) {
+                        if (payload == null) throw new SerializeException("Null payload in batch");
+                        codec = codec(payloadDescriptor, codec, payload);
+                        if (!codec.writeField(i, payload, buffer)) setNull(buffer, bitmapPosition, row);
+                        row++;
+                    }
+                }
+                buffer.putInt(lengthPosition, buffer.position() - bitmapPosition);
+            }
+        } catch (SerializeException e) {
+            buffer.position(start);
+            throw e;
+        } catch (BufferOverflowException e) {
+            buffer.position(start);
+            throw new SerializeException("Buffer overflow, " + encodedSize(payloadDescriptor, payloads, options) + " bytes required", e);
+        } catch (Exception e) {
+            buffer.position(start);
+            throw new SerializeException(e);
+        } finally {
+            buffer.order(order);
+        }
+    }
+
+    private static byte[] encodings(PayloadLayout layout, PayloadBatchOptions options) throws SerializeException {
+        try {
+            return (options == null ? DEFAULT_OPTIONS : options).resolve(layout);
+        } catch (IllegalArgumentException e) {
+            throw new SerializeException(e.getMessage(), e);
+        }
+    }
+
+    private static void setNull(ByteBuffer buffer, int bitmapPosition, int row) {
+        int index = bitmapPosition + (row >>> 3);
+        buffer.put(index, (byte) (buffer.get(index) | (1 << (row & 7))));
+    }
+
+    /**
+     * @return true for the types a delta-of-delta column can hold
+     */
+    static boolean isLongType(FieldType type) {
+        switch (type) {
+            case INT64:
+            case DATE:
+            case VARINT64:
+            case UVARINT64:
+            case ZIGZAG64:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static PayloadCodec<?> codec(PayloadDescriptor payloadDescriptor, PayloadCodec<?> last, Object payload) {
+        if (last != null && last.getPayloadClass() == payload.getClass()) return last;
+        return Payloads.codec(payloadDescriptor, payload.getClass());
+    }
+
+    public static PayloadBatch decode(PayloadDescriptor payloadDescriptor, byte [] batch) throws DeserializeException {
+        return decode(payloadDescriptor, ByteBuffer.wrap(batch));
+    }
+
+    /**
+     * Decode a batch starting at the current position of the buffer. On success the position is moved to
+     * the end of the batch.
+     * @param payloadDescriptor pd
+     * @param buffer big-endian buffer
+     * @return decoded batch
+     * @throws DeserializeException if the batch was written with another descriptor or is malformed
+     */
+    public static PayloadBatch decode(PayloadDescriptor payloadDescriptor, ByteBuffer buffer) throws DeserializeException {
+        PayloadLayout layout = payloadDescriptor.layout();
+        int start = buffer.position();
+        try {
+            int id = buffer.getInt();
+            if (id != payloadDescriptor.getId()) {
+                throw new DeserializeException("Payload descriptor id mismatch: " + id + " <> " + payloadDescriptor.getId());
+            }
+            int rows = buffer.getInt();
+            if (rows < 0) throw new DeserializeException("Invalid row count: " + rows);
+            int columnCount = buffer.getShort() & 0xFFFF;
+            if (columnCount != layout.fields.length) {
+                throw new DeserializeException("Column count mismatch: " + columnCount + " <> " + layout.fields.length);
+            }
+            int bitmapSize = (rows + 7) >>> 3;
+            byte nulls[][] = new byte[columnCount][];
+            Object columns[] = new Object[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                byte encoding = buffer.get();
+                int length = buffer.getInt();
+                int end = buffer.position() + length;
+                if (length < bitmapSize || end > buffer.limit()) {
+                    throw new DeserializeException("Truncated column: " + layout.fields[i].getName());
+                }
+                byte bitmap[] = new byte[bitmapSize];
+                buffer.get(bitmap);
+                nulls[i] = bitmap;
+                if (encoding == ENCODING_PLAIN) {
+                    columns[i] = readPlain(layout.types[i], layout.codes[i], bitmap, rows, buffer);
+                } else if (encoding == ENCODING_DELTA_OF_DELTA && isLongType(layout.types[i])) {
+                    long values[] = new long[rows];
+                    DeltaOfDelta.decode(buffer, bitmap, rows, values);
+                    columns[i] = values;
+                } else if (encoding == ENCODING_DICTIONARY && layout.types[i] == FieldType.STRING) {
+                    columns[i] = readDictionary(bitmap, rows, buffer, end);
+                } else {
+                    throw new DeserializeException("Unknown column encoding: " + encoding);
+                }
+                if (buffer.position() != end) {
+                    throw new DeserializeException("Malformed column: " + layout.fields[i].getName());
+                }
+            }
+            return new PayloadBatch(payloadDescriptor, layout, rows, nulls, columns);
+        } catch (DeserializeException e) {
+            buffer.position(start);
+            throw e;
+        } catch (BufferUnderflowException e) {
+            buffer.position(start);
+            throw new DeserializeException("Buffer underflow, truncated batch", e);
+        } catch (Exception e) {
+            buffer.position(start);
+            throw new DeserializeException(e);
+        }
+    }
+
+    private static Object readPlain(FieldType type, byte code, byte bitmap[], int rows, ByteBuffer buffer) throws DeserializeException {
+        switch (code) {
+            case PayloadLayout.CODE_INTEGRAL: {
+                long values[] = new long[rows];
+                for (int r = 0; r < rows; r++) {
+                    if (!isSet(bitmap, r)) values[r] = type.readLong(buffer);
+                }
+                return values;
+            }
+            case PayloadLayout.CODE_FLOATING: {
+                double values[] = new double[rows];
+                for (int r = 0; r < rows; r++) {
+                    if (!isSet(bitmap, r)) values[r] = type.readDouble(buffer);
+                }
+                return values;
+            }
+            case PayloadLayout.CODE_BOOL: {
+                boolean values[] = new boolean[rows];
+                for (int r = 0; r < rows; r++) {
+                    if (!isSet(bitmap, r)) values[r] = buffer.get() > 0;
+                }
+                return values;
+            }
+            default: {
+                Object values[] = new Object[rows];
+                for (int r = 0; r < rows; r++) {
+                    if (!isSet(bitmap, r)) values[r] = type.deserialize(buffer);
+                }
+                return values;
+            }
+        }
+    }
+
+    private static Object readDictionary(byte bitmap[], int rows, ByteBuffer buffer, int end) throws DeserializeException {
+        long count = BinaryUtils.getVarint(buffer);
+        // every entry takes at least 2 bytes
+        if (count < 0 || count > (end - buffer.position()) / 2) throw new DeserializeException("Invalid dictionary size: " + count);
+        String dictionary[] = new String[(int) count];
+        for (int j = 0; j < dictionary.length; j++) {
+            dictionary[j] = Payloads.readString(buffer);
+        }
+        Object values[] = new Object[rows];
+        for (int r = 0; r < rows; r++) {
+            if (isSet(bitmap, r)) continue;
+            long index = BinaryUtils.getVarint(buffer);
+            if (index < 0 || index >= count) throw new DeserializeException("Dictionary index out of range: " + index);
+            values[r] = dictionary[(int) index];
+        }
+        return values;
+    }
+
+    private static boolean isSet(byte bitmap[], int index) {
+        return (bitmap[index >>> 3] & (1 << (index & 7))) != 0;
+    }
+
+    public PayloadDescriptor getDescriptor() {
+        return descriptor;
+    }
+
+    public PayloadLayout getLayout() {
+        return layout;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * @param name field name
+     * @return index of the column, -1 if there is no such field
+     */
+    public int indexOf(String name) {
+        return layout.indexOf(name);
+    }
+
+    public boolean isNull(int row, int column) {
+        checkRow(row);
+        return isSet(nulls[column], row);
+    }
+
+    /**
+     * Return the values of an integral or DATE column, DATE values as epoch milliseconds. Null rows hold 0.
+     * The array is not copied and must not be modified.
+     * @param column column index
+     * @return values indexed by row
+     */
+    public long[] getLongColumn(int column) {
+        return (long[]) column(column, PayloadLayout.CODE_INTEGRAL);
+    }
+
+    /**
+     * Return the values of a FLOAT or DOUBLE column. Null rows hold 0.
+     * The array is not copied and must not be modified.
+     * @param column column index
+     * @return values indexed by row
+     */
+    public double[] getDoubleColumn(int column) {
+        return (double[]) column(column, PayloadLayout.CODE_FLOATING);
+    }
+
+    /**
+     * Return the values of a BOOL column. Null rows hold false.
+     * The array is not copied and must not be modified.
+     * @param column column index
+     * @return values indexed by row
+     */
+    public boolean[] getBooleanColumn(int column) {
+        return (boolean[]) column(column, PayloadLayout.CODE_BOOL);
+    }
+
+    /**
+     * Return the values of a STRING or BYTES column. Null rows hold null.
+     * The array is not copied and must not be modified.
+     * @param column column index
+     * @return values indexed by row
+     */
+    public Object[] getObjectColumn(int column) {
+        return (Object[]) column(column, PayloadLayout.CODE_LENGTH_PREFIXED);
+    }
+
+    /**
+     * Read an integral or DATE value, unsigned values are returned as in {@linkplain Payload#getLong(String)}
+     * @param row row index
+     * @param column column index
+     * @return signed value
+     * @throws IllegalStateException if the value is null
+     */
+    public long getLong(int row, int column) {
+        checkNotNull(row, column);
+        if (layout.codes[column] == PayloadLayout.CODE_FLOATING) return (long) ((double[]) columns[column])[row];
+        return getLongColumn(column)[row];
+    }
+
+    public int getInt(int row, int column) {
+        return (int) getLong(row, column);
+    }
+
+    public double getDouble(int row, int column) {
+        checkNotNull(row, column);
+        if (layout.codes[column] == PayloadLayout.CODE_INTEGRAL) return ((long[]) columns[column])[row];
+        return getDoubleColumn(column)[row];
+    }
+
+    public boolean getBoolean(int row, int column) {
+        checkNotNull(row, column);
+        return getBooleanColumn(column)[row];
+    }
+
+    /**
+     * @return the string, null for a null value
+     */
+    public String getString(int row, int column) {
+        checkRow(row);
+        return (String) getObjectColumn(column)[row];
+    }
+
+    /**
+     * @return the bytes, null for a null value
+     */
+    public byte[] getBytes(int row, int column) {
+        checkRow(row);
+        return (byte[]) getObjectColumn(column)[row];
+    }
+
+    /**
+     * Return a value boxed as {@linkplain FieldType#deserialize(ByteBuffer)} does
+     * @param row row index
+     * @param column column index
+     * @return value or null
+     */
+    public Object getValue(int row, int column) {
+        if (isNull(row, column)) return null;
+        Object values = columns[column];
+        switch (layout.types[column]) {
+            case INT8:
+            case UINT8:
+                return (byte) ((long[]) values)[row];
+            case INT16:
+            case UINT16:
+                return (short) ((long[]) values)[row];
+            case INT32:
+            case UINT32:
+            case VARINT32:
+            case UVARINT32:
+            case ZIGZAG32:
+                return (int) ((long[]) values)[row];
+            case INT64:
+            case VARINT64:
+            case UVARINT64:
+            case ZIGZAG64:
+                return ((long[]) values)[row];
+            case DATE:
+                return new Date(((long[]) values)[row]);
+            case FLOAT:
+                return (float) ((double[]) values)[row];
+            case DOUBLE:
+                return ((double[]) values)[row];
+            case BOOL:
+                return ((boolean[]) values)[row] ? Boolean.TRUE : Boolean.FALSE;
+            default:
+                return ((Object[]) values)[row];
+        }
+    }
+
+    /**
+     * Return one row as a {@linkplain Payload}
+     * @param row row index
+     * @return payload
+     */
+    public Payload getPayload(int row) {
+        checkRow(row);
+        int count = columns.length;
+        long values[] = new long[count];
+        Object objects[] = null;
+        byte nullFlags[] = new byte[layout.nullFlagSize];
+        for (int i = 0; i < count; i++) {
+            if (isSet(nulls[i], row)) {
+                nullFlags[i >>> 3] |= (byte) (1 << (i & 7));
+                continue;
+            }
+            switch (layout.codes[i]) {
+                case PayloadLayout.CODE_INTEGRAL:
+                    values[i] = ((long[]) columns[i])[row];
+                    break;
+                case PayloadLayout.CODE_FLOATING:
+                    values[i] = Double.doubleToRawLongBits(((double[]) columns[i])[row]);
+                    break;
+                case PayloadLayout.CODE_BOOL:
+                    values[i] = ((boolean[]) columns[i])[row] ? 1 : 0;
+                    break;
+                default:
+                    if (objects == null) objects = new Object[count];
+                    objects[i] = ((Object[]) columns[i])[row];
+                    break;
+            }
+        }
+        return new Payload(descriptor.getId(), layout, values, objects, nullFlags);
+    }
+
+    /**
+     * @return all rows as payloads
+     */
+    public List<Payload> toPayloads() {
+        List<Payload> list = new ArrayList<Payload>(rowCount);
+        for (int r = 0; r < rowCount; r++) {
+            list.add(getPayload(r));
+        }
+        return list;
+    }
+
+    /**
+     * Distinct values of a STRING column and the index of the value of each row
+     */
+    private static final class StringDictionary {
+
+        private final List<byte[]> entries = new ArrayList<byte[]>();
+
+        /**
+         * Index of the value of each row, -1 for null
+         */
+        private final int indexes[];
+
+        private StringDictionary(int rows) {
+            this.indexes = new int[rows];
+        }
+
+        static StringDictionary build(PayloadDescriptor payloadDescriptor, Collection<?> payloads, int column) throws SerializeException {
+            StringDictionary dictionary = new StringDictionary(payloads.size());
+            Map<String, Integer> map = new HashMap<String, Integer>();
+            PayloadCodec<?> codec = null;
+            int row = 0;
+            for (Object payload : payloads) {
+                if (payload == null) throw new SerializeException("Null payload in batch");
+                codec = codec(payloadDescriptor, codec, payload);
+                Object value = codec.getValue(column, payload);
+                if (value != null && !(value instanceof String)) {
+                    throw new SerializeException("Can't convert type: " + value.getClass().getCanonicalName() + " ==> to String bytes");
+                }
+                String string = (String) value;
+                if (string == null || string.isEmpty()) {
+                    dictionary.indexes[row++] = -1;
+                    continue;
+                }
+                Integer index = map.get(string);
+                if (index == null) {
+                    byte bytes[] = string.getBytes(StandardCharsets.UTF_8);
+                    if (bytes.length > SerializeUtils.MAX_FIELD_LENGTH) bytes = Arrays.copyOf(bytes, SerializeUtils.MAX_FIELD_LENGTH);
+                    index = dictionary.entries.size();
+                    dictionary.entries.add(bytes);
+                    map.put(string, index);
+                }
+                dictionary.indexes[row++] = index;
+            }
+            return dictionary;
+        }
+
+        int encodedSize() {
+            int size = BinaryUtils.varintLength(entries.size());
+            for (byte bytes[] : entries) {
+                size += 2 + bytes.length;
+            }
+            for (int index : indexes) {
+                if (index >= 0) size += BinaryUtils.varintLength(index);
+            }
+            return size;
+        }
+
+        void write(ByteBuffer buffer, int bitmapPosition) {
+            BinaryUtils.putVarint(buffer, entries.size());
+            for (byte bytes[] : entries) {
+                buffer.putShort((short) bytes.length);
+                buffer.put(bytes);
+            }
+            for (int row = 0; row < indexes.length; row++) {
+                if (indexes[row] < 0) {
+                    setNull(buffer, bitmapPosition, row);
+                } else {
+                    BinaryUtils.putVarint(buffer, indexes[row]);
+                }
+            }
+        }
+    }
+
+    private Object column(int column, byte code) {
+        if (layout.codes[column] != code) {
+            throw new IllegalArgumentException("Field " + layout.fields[column].getName() + " is " + layout.types[column]);
+        }
+        return columns[column];
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= rowCount) throw new IndexOutOfBoundsException("Row: " + row + ", rows: " + rowCount);
+    }
+
+    private void checkNotNull(int row, int column) {
+        if (isNull(row, column)) throw new IllegalStateException("Field is null: " + layout.fields[column].getName());
+    }
+}
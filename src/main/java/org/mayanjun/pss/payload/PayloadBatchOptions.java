@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.payload;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Column encodings used by {@linkplain PayloadBatch#encode(PayloadDescriptor, java.util.Collection, PayloadBatchOptions)}.
+ * Columns without an explicit encoding are written with {@linkplain PayloadBatch#ENCODING_PLAIN}.
+ * <p>Options are not thread safe while being configured; once set up they may be shared.</p>
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public class PayloadBatchOptions {
+
+    private final Map<String, Byte> encodings = new HashMap<String, Byte>();
+
+    /**
+     * Set the encoding of a column
+     * @param field field name
+     * @param encoding one of the PayloadBatch.ENCODING_* constants
+     * @return these options
+     */
+    public PayloadBatchOptions encoding(String field, byte encoding) {
+        if (encoding < PayloadBatch.ENCODING_PLAIN || encoding > PayloadBatch.ENCODING_DICTIONARY) {
+            throw new IllegalArgumentException("Unknown column encoding: " + encoding);
+        }
+        encodings.put(field, encoding);
+        return this;
+    }
+
+    /**
+     * Encode the fields with {@linkplain PayloadBatch#ENCODING_DELTA_OF_DELTA}, meant for timestamps and other
+     * monotonic INT64 values
+     * @param fields names of DATE, INT64, VARINT64, UVARINT64 or ZIGZAG64 fields
+     * @return these options
+     */
+    public PayloadBatchOptions deltaOfDelta(String... fields) {
+        for (String field : fields) {
+            encoding(field, PayloadBatch.ENCODING_DELTA_OF_DELTA);
+        }
+        return this;
+    }
+
+    /**
+     * Encode the fields with {@linkplain PayloadBatch#ENCODING_DICTIONARY}: each distinct value is written once per
+     * batch, meant for low cardinality strings
+     * @param fields names of STRING fields
+     * @return these options
+     */
+    public PayloadBatchOptions dictionary(String... fields) {
+        for (String field : fields) {
+            encoding(field, PayloadBatch.ENCODING_DICTIONARY);
+        }
+        return this;
+    }
+
+    /**
+     * @param field field name
+     * @return the encoding of the column
+     */
+    public byte getEncoding(String field) {
+        Byte encoding = encodings.get(field);
+        return encoding == null ? PayloadBatch.ENCODING_PLAIN : encoding;
+    }
+
+    /**
+     * Resolve the encoding of every column of the layout
+     * @throws IllegalArgumentException if an encoding doesn't apply to the type of its field
+     */
+    byte[] resolve(PayloadLayout layout) {
+        byte result[] = new byte[layout.fields.length];
+        for (int i = 0; i < result.length; i++) {
+            byte encoding = getEncoding(layout.fields[i].getName());
+            if (encoding == PayloadBatch.ENCODING_DELTA_OF_DELTA && !PayloadBatch.isLongType(layout.types[i])) {
+                throw new IllegalArgumentException("Delta-of-delta encoding doesn't apply to " + layout.types[i]
+                        + " field: " + layout.fields[i].getName());
+            }
+            if (encoding == PayloadBatch.ENCODING_DICTIONARY && layout.types[i] != FieldType.STRING) {
+                throw new IllegalArgumentException("Dictionary encoding doesn't apply to " + layout.types[i]
+                        + " field: " + layout.fields[i].getName());
+            }
+            result[i] = encoding;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,773 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.payload;
+
+import org.mayanjun.pss.DeserializeException;
+import org.mayanjun.pss.SerializeException;
+import org.mayanjun.pss.metrics.PayloadListener;
+import org.mayanjun.pss.util.BinaryUtils;
+import org.mayanjun.pss.util.BufferPool;
+import org.mayanjun.pss.util.SerializeUtils;
+import org.mayanjun.pss.util.Utf8;
+
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Date;
+
+/**
+ * Codec compiled for a {@linkplain PayloadDescriptor} and a payload class.
+ * The property accessors and binders of all fields are resolved once, so serializing a payload
+ * or binding a deserialized one doesn't need any reflective lookup. Use {@linkplain Payloads#codec(PayloadDescriptor, Class)}
+ * to get a cached instance.
+ * @param <T> payload type
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public final class PayloadCodec<T> {
+
+    private final PayloadDescriptor descriptor;
+
+    private final Class<T> payloadClass;
+
+    private final PayloadLayout layout;
+
+    private final FieldDescriptor[] fields;
+
+    private final PropertyAccessor[] accessors;
+
+    private final int nullFlagSize;
+
+    /**
+     * Compiled on first deserialization
+     */
+    private volatile PropertyBinder[] binders;
+
+    private volatile Constructor<T> constructor;
+
+    private PayloadCodec(PayloadDescriptor descriptor, Class<T> payloadClass) {
+        this.descriptor = descriptor;
+        this.payloadClass = payloadClass;
+        this.layout = descriptor.layout();
+        this.fields = layout.fields;
+        this.accessors = new PropertyAccessor[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            accessors[i] = PropertyAccessor.compile(payloadClass, fields[i].getName());
+        }
+        this.nullFlagSize = layout.nullFlagSize;
+    }
+
+    /**
+     * Compile a new codec. Prefer {@linkplain Payloads#codec(PayloadDescriptor, Class)} which caches the result.
+     * @param descriptor payload descriptor
+     * @param payloadClass class of the payload objects
+     * @return codec
+     */
+    public static <T> PayloadCodec<T> compile(PayloadDescriptor descriptor, Class<T> payloadClass) {
+        return new PayloadCodec<T>(descriptor, payloadClass);
+    }
+
+    public PayloadDescriptor getDescriptor() {
+        return descriptor;
+    }
+
+    public Class<T> getPayloadClass() {
+        return payloadClass;
+    }
+
+    public PayloadLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Return true if the codec is still compiled against the current layout of the descriptor
+     * @return true if usable
+     */
+    boolean isCurrent() {
+        return layout == descriptor.layout();
+    }
+
+    /**
+     * Read the value of a field
+     * @param index field index
+     * @param payload payload object
+     * @return field value
+     * @throws SerializeException if the property can't be read
+     */
+    public Object getValue(int index, Object payload) throws SerializeException {
+        try {
+            return accessors[index].get(payload);
+        } catch (Exception e) {
+            throw new SerializeException("Can't read field: " + fields[index].getName(), e);
+        }
+    }
+
+    /**
+     * 序列化Payload并写入输出流
+     * @param payload payload
+     * @param outputStream output stream
+     * @throws SerializeException
+     */
+    public void serialize(Object payload, OutputStream outputStream) throws SerializeException {
+        BufferPool pool = Payloads.getBufferPool();
+        if (pool == null || pool.isDirect()) {
+            byte bytes[] = serialize(payload);
+            write(outputStream, bytes, 0, bytes.length);
+            return;
+        }
+        ByteBuffer buffer = pool.lease(serializedSize(payload));
+        try {
+            serialize(payload, buffer);
+            write(outputStream, buffer.array(), buffer.arrayOffset(), buffer.position());
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    private static void write(OutputStream outputStream, byte bytes[], int offset, int length) throws SerializeException {
+        try {
+            outputStream.write(bytes, offset, length);
+            outputStream.flush();
+        } catch (Exception e) {
+            throw new SerializeException(e);
+        }
+    }
+
+    /**
+     * Serialize the payload to a new array of the exact size
+     * @param payload payload
+     * @return serialized bytes
+     * @throws SerializeException
+     */
+    public byte[] serialize(Object payload) throws SerializeException {
+        byte bytes[] = new byte[serializedSize(payload)];
+        serialize(payload, ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    /**
+     * Return the exact number of bytes {@linkplain #serialize(Object, ByteBuffer)} will write for the payload
+     * @param payload payload
+     * @return serialized size
+     * @throws SerializeException
+     */
+    public int serializedSize(Object payload) throws SerializeException {
+        if (payload == null) throw new SerializeException("No payload specified");
+        try {
+            int size = 4 + nullFlagSize;
+            for (int i = 0; i < fields.length; i++) {
+                size += fieldSize(i, payload);
+            }
+            return size;
+        } catch (SerializeException e) {
+            PayloadListener listener = Payloads.listener(descriptor.getId());
+            if (listener != null) listener.failed(descriptor, true, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Return the number of bytes written for a field value
+     * @param index field index
+     * @param payload payload
+     * @return size, 0 for a null value
+     * @throws SerializeException
+     */
+    int fieldSize(int index, Object payload) throws SerializeException {
+        FieldType type = layout.types[index];
+        if (accessors[index].kind() != PropertyAccessor.KIND_OBJECT && layout.sizes[index] > 0) return layout.sizes[index];
+        if (type.isVarint()) return varintSize(index, type, payload);
+        Object value = getValue(index, payload);
+        if (value == null) return 0;
+        if (type == FieldType.STRING) {
+            if (!(value instanceof String)) throw convertError(value, "String");
+            int len = Utf8.encodedLength((String) value);
+            return len > 0 ? 2 + Math.min(len, SerializeUtils.MAX_FIELD_LENGTH) : 0;
+        } else if (type == FieldType.BYTES) {
+            if (!(value instanceof byte[])) throw convertError(value, "Bytes");
+            int len = ((byte[]) value).length;
+            return len > 0 ? 2 + Math.min(len, SerializeUtils.MAX_FIELD_LENGTH) : 0;
+        }
+        return type.getSize();
+    }
+
+    /**
+     * Read a 64 bit integral field value converted the same way {@linkplain #serialize(Object, ByteBuffer)} converts it
+     * @param index field index
+     * @param payload payload
+     * @param values array receiving the value
+     * @param position index in the array
+     * @return false if the value is null
+     * @throws SerializeException
+     */
+    boolean getLong(int index, Object payload, long values[], int position) throws SerializeException {
+        FieldType type = layout.types[index];
+        PropertyAccessor accessor = accessors[index];
+        try {
+            switch (accessor.kind()) {
+                case PropertyAccessor.KIND_LONG:
+                    values[position] = accessor.getLong(payload);
+                    return true;
+                case PropertyAccessor.KIND_DOUBLE:
+                    values[position] = (long) accessor.getDouble(payload);
+                    return true;
+                case PropertyAccessor.KIND_BOOLEAN:
+                    throw convertError(accessor.get(payload), typeName(type));
+                default:
+                    break;
+            }
+        } catch (SerializeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SerializeException("Can't read field: " + fields[index].getName(), e);
+        }
+        Object value = getValue(index, payload);
+        if (value == null) return false;
+        if (type == FieldType.DATE && value instanceof Date) {
+            values[position] = ((Date) value).getTime();
+        } else if (value instanceof Number) {
+            values[position] = ((Number) value).longValue();
+        } else {
+            throw convertError(value, typeName(type));
+        }
+        return true;
+    }
+
+    /**
+     * Return the length of a varint field value, 0 for a null value
+     */
+    private int varintSize(int index, FieldType type, Object payload) throws SerializeException {
+        PropertyAccessor accessor = accessors[index];
+        try {
+            switch (accessor.kind()) {
+                case PropertyAccessor.KIND_LONG:
+                    return type.encodedLength(accessor.getLong(payload));
+                case PropertyAccessor.KIND_DOUBLE:
+                    return type.encodedLength((long) accessor.getDouble(payload));
+                case PropertyAccessor.KIND_BOOLEAN:
+                    throw convertError(accessor.get(payload), typeName(type));
+                default:
+                    break;
+            }
+        } catch (SerializeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SerializeException("Can't read field: " + fields[index].getName(), e);
+        }
+        Object value = getValue(index, payload);
+        if (value == null) return 0;
+        if (!(value instanceof Number)) throw convertError(value, typeName(type));
+        return type.encodedLength(((Number) value).longValue());
+    }
+
+    /**
+     * Serialize the payload into the buffer, starting at its current position. The id, null flags and
+     * field values are written in place, in big-endian order, without allocating per field. On success
+     * the position of the buffer is advanced by {@linkplain #serializedSize(Object)}; on failure it is left unchanged.
+     * @param payload payload
+     * @param buffer heap or direct buffer with enough remaining space
+     * @throws SerializeException if a value can't be converted or the buffer overflows
+     */
+    public void serialize(Object payload, ByteBuffer buffer) throws SerializeException {
+        PayloadListener listener = Payloads.listener(descriptor.getId());
+        if (listener == null) {
+            writePayload(payload, buffer);
+            return;
+        }
+        long start = System.nanoTime();
+        int position = buffer.position();
+        try {
+            writePayload(payload, buffer);
+        } catch (SerializeException e) {
+            // an overflow asks the caller to retry with more space, it is not a failure of the payload
+            if (!(e.getCause() instanceof BufferOverflowException)) listener.failed(descriptor, true, e);
+            throw e;
+        }
+        long nanos = System.nanoTime() - start;
+        listener.serialized(descriptor, buffer.position() - position, Payloads.nullCount(buffer, position + 4, nullFlagSize), nanos);
+    }
+
+    private void writePayload(Object payload, ByteBuffer buffer) throws SerializeException {
+        if (payload == null) throw new SerializeException("No payload specified");
+        int start = buffer.position();
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        try {
+            buffer.putInt(descriptor.getId());
+
+            // null flags are reserved here and set while writing the values
+            int flagsPosition = buffer.position();
+            for (int i = 0; i < nullFlagSize; i++) {
+                buffer.put((byte) 0);
+            }
+
+            for (int i = 0; i < fields.length; i++) {
+                if (!writeField(i, payload, buffer)) {
+                    int index = flagsPosition + (i >>> 3);
+                    buffer.put(index, (byte) (buffer.get(index) | (1 << (i & 7))));
+                }
+            }
+        } catch (SerializeException e) {
+            buffer.position(start);
+            throw e;
+        } catch (BufferOverflowException e) {
+            buffer.position(start);
+            throw new SerializeException("Buffer overflow", e);
+        } catch (Exception e) {
+            buffer.position(start);
+            throw new SerializeException(e);
+        } finally {
+            buffer.order(order);
+        }
+    }
+
+    /**
+     * Deserialize a payload from the buffer, starting at its current position, into a new instance
+     * created by the no-arg constructor of the payload class
+     * @param buffer buffer
+     * @return new payload object
+     * @throws DeserializeException
+     */
+    public T deserialize(ByteBuffer buffer) throws DeserializeException {
+        T target;
+        try {
+            Constructor<T> ctor = constructor;
+            if (ctor == null) {
+                ctor = payloadClass.getDeclaredConstructor();
+                ctor.setAccessible(true);
+                constructor = ctor;
+            }
+            target = ctor.newInstance();
+        } catch (Exception e) {
+            throw new DeserializeException("Can't instantiate payload class: " + payloadClass.getName(), e);
+        }
+        return deserialize(buffer, target);
+    }
+
+    /**
+     * Deserialize a payload from the buffer, starting at its current position, into the target object.
+     * The values are set through the compiled binders; null fields set object properties to null and
+     * leave primitive properties unchanged. On success the buffer position is moved to the end of the payload.
+     * @param buffer buffer
+     * @param target target object
+     * @return the target object
+     * @throws DeserializeException
+     */
+    public T deserialize(ByteBuffer buffer, T target) throws DeserializeException {
+        PayloadListener listener = Payloads.listener(descriptor.getId());
+        if (listener == null) return readPayload(buffer, target);
+        long start = System.nanoTime();
+        int position = buffer.position();
+        try {
+            readPayload(buffer, target);
+        } catch (DeserializeException e) {
+            listener.failed(descriptor, false, e);
+            throw e;
+        }
+        long nanos = System.nanoTime() - start;
+        listener.deserialized(descriptor, buffer.position() - position, Payloads.nullCount(buffer, position + 4, nullFlagSize), nanos);
+        return target;
+    }
+
+    private T readPayload(ByteBuffer buffer, T target) throws DeserializeException {
+        PropertyBinder binders[] = binders();
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        try {
+            // 读ID
+            buffer.getInt();
+            int flagsPosition = buffer.position();
+            buffer.position(flagsPosition + nullFlagSize);
+            for (int i = 0; i < fields.length; i++) {
+                if ((buffer.get(flagsPosition + (i >>> 3)) & (1 << (i & 7))) != 0) {
+                    if (!binders[i].getType().isPrimitive()) binders[i].set(target, null);
+                } else {
+                    readField(layout.types[i], binders[i], buffer, target);
+                }
+            }
+            return target;
+        } catch (DeserializeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DeserializeException(e);
+        } finally {
+            buffer.order(order);
+        }
+    }
+
+    private PropertyBinder[] binders() {
+        PropertyBinder result[] = binders;
+        if (result == null) {
+            result = new PropertyBinder[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                result[i] = PropertyBinder.compile(payloadClass, fields[i].getName());
+            }
+            binders = result;
+        }
+        return result;
+    }
+
+    private static void readField(FieldType type, PropertyBinder binder, ByteBuffer buffer, Object target) throws Exception {
+        switch (type) {
+            case INT8:
+            case UINT8:
+            case INT16:
+            case UINT16:
+            case INT32:
+            case UINT32:
+            case INT64:
+            case DATE:
+            case VARINT32:
+            case UVARINT32:
+            case ZIGZAG32:
+            case VARINT64:
+            case UVARINT64:
+            case ZIGZAG64:
+                bindLong(type, binder, target, type.unsignedLong(type.readLong(buffer)));
+                break;
+            case FLOAT:
+            case DOUBLE:
+                bindDouble(type, binder, target, type.readDouble(buffer));
+                break;
+            case BOOL:
+                boolean b = buffer.get() > 0;
+                Class<?> cls = binder.getType();
+                if (cls == boolean.class) {
+                    binder.setBoolean(target, b);
+                } else if (cls == Boolean.class || cls == Object.class) {
+                    binder.set(target, b ? Boolean.TRUE : Boolean.FALSE);
+                } else {
+                    throw convertError(type, binder);
+                }
+                break;
+            default:
+                Object value = type.deserialize(buffer);
+                if (value != null && !binder.getType().isInstance(value)) throw convertError(type, binder);
+                binder.set(target, value);
+                break;
+        }
+    }
+
+    /**
+     * Bind an integral value, unsigned types are passed as their unsigned value
+     */
+    private static void bindLong(FieldType type, PropertyBinder binder, Object target, long value) throws Exception {
+        Class<?> cls = binder.getType();
+        if (cls == long.class) {
+            binder.setLong(target, value);
+        } else if (cls == int.class) {
+            binder.setInt(target, (int) value);
+        } else if (cls == short.class) {
+            binder.setShort(target, (short) value);
+        } else if (cls == byte.class) {
+            binder.setByte(target, (byte) value);
+        } else if (cls == double.class) {
+            binder.setDouble(target, (double) value);
+        } else if (cls == float.class) {
+            binder.setFloat(target, (float) value);
+        } else if (cls == Long.class) {
+            binder.set(target, value);
+        } else if (cls == Integer.class) {
+            binder.set(target, (int) value);
+        } else if (cls == Short.class) {
+            binder.set(target, (short) value);
+        } else if (cls == Byte.class) {
+            binder.set(target, (byte) value);
+        } else if (cls == Double.class) {
+            binder.set(target, (double) value);
+        } else if (cls == Float.class) {
+            binder.set(target, (float) value);
+        } else if (cls == Date.class) {
+            binder.set(target, new Date(value));
+        } else if (cls == Object.class || cls == Number.class) {
+            binder.set(target, boxed(type, value));
+        } else {
+            throw convertError(type, binder);
+        }
+    }
+
+    private static void bindDouble(FieldType type, PropertyBinder binder, Object target, double value) throws Exception {
+        Class<?> cls = binder.getType();
+        if (cls == double.class) {
+            binder.setDouble(target, value);
+        } else if (cls == float.class) {
+            binder.setFloat(target, (float) value);
+        } else if (cls == long.class) {
+            binder.setLong(target, (long) value);
+        } else if (cls == int.class) {
+            binder.setInt(target, (int) value);
+        } else if (cls == Double.class) {
+            binder.set(target, value);
+        } else if (cls == Float.class) {
+            binder.set(target, (float) value);
+        } else if (cls == Object.class || cls == Number.class) {
+            binder.set(target, type == FieldType.FLOAT ? (Object) (float) value : (Object) value);
+        } else {
+            throw convertError(type, binder);
+        }
+    }
+
+    /**
+     * Box the value the same way as {@linkplain FieldType#deserialize(ByteBuffer)}
+     */
+    private static Object boxed(FieldType type, long value) {
+        switch (type) {
+            case INT8:
+            case UINT8:
+                return (byte) value;
+            case INT16:
+            case UINT16:
+                return (short) value;
+            case INT32:
+            case UINT32:
+            case VARINT32:
+            case UVARINT32:
+            case ZIGZAG32:
+                return (int) value;
+            case DATE:
+                return new Date(value);
+            default:
+                return value;
+        }
+    }
+
+    private static DeserializeException convertError(FieldType type, PropertyBinder binder) {
+        return new DeserializeException("Can't convert type: " + type + " ==> to " + binder.getType().getCanonicalName()
+                + " property: " + binder.getPath());
+    }
+
+    /**
+     * Write a field value
+     * @return false if the value is null and nothing is written
+     */
+    boolean writeField(int index, Object payload, ByteBuffer buffer) throws Exception {
+        FieldType type = layout.types[index];
+        PropertyAccessor accessor = accessors[index];
+        switch (accessor.kind()) {
+            case PropertyAccessor.KIND_LONG:
+                writeLong(type, accessor.getLong(payload), buffer);
+                return true;
+            case PropertyAccessor.KIND_DOUBLE:
+                writeDouble(type, accessor.getDouble(payload), buffer);
+                return true;
+            case PropertyAccessor.KIND_BOOLEAN:
+                if (type != FieldType.BOOL) throw convertError(accessor.get(payload), typeName(type));
+                buffer.put(accessor.getBoolean(payload) ? (byte) 1 : (byte) 0);
+                return true;
+            default:
+                return writeObject(type, getValue(index, payload), buffer);
+        }
+    }
+
+    private static void writeLong(FieldType type, long value, ByteBuffer buffer) throws SerializeException {
+        switch (type) {
+            case INT8:
+            case UINT8:
+                buffer.put((byte) value);
+                break;
+            case INT16:
+            case UINT16:
+                buffer.putShort((short) value);
+                break;
+            case INT32:
+            case UINT32:
+                buffer.putInt((int) value);
+                break;
+            case INT64:
+            case DATE:
+                buffer.putLong(value);
+                break;
+            case FLOAT:
+                buffer.putFloat((float) value);
+                break;
+            case DOUBLE:
+                buffer.putDouble((double) value);
+                break;
+            case VARINT32:
+            case UVARINT32:
+            case ZIGZAG32:
+            case VARINT64:
+            case UVARINT64:
+            case ZIGZAG64:
+                BinaryUtils.putVarint(buffer, type.toVarint(value));
+                break;
+            default:
+                throw convertError(value, typeName(type));
+        }
+    }
+
+    private static void writeDouble(FieldType type, double value, ByteBuffer buffer) throws SerializeException {
+        switch (type) {
+            case INT8:
+            case UINT8:
+                buffer.put((byte) value);
+                break;
+            case INT16:
+            case UINT16:
+                buffer.putShort((short) value);
+                break;
+            case INT32:
+            case UINT32:
+                buffer.putInt((int) value);
+                break;
+            case INT64:
+            case DATE:
+                buffer.putLong((long) value);
+                break;
+            case FLOAT:
+                buffer.putFloat((float) value);
+                break;
+            case DOUBLE:
+                buffer.putDouble(value);
+                break;
+            case VARINT32:
+            case UVARINT32:
+            case ZIGZAG32:
+            case VARINT64:
+            case UVARINT64:
+            case ZIGZAG64:
+                BinaryUtils.putVarint(buffer, type.toVarint((long) value));
+                break;
+            default:
+                throw convertError(value, typeName(type));
+        }
+    }
+
+    private static boolean writeObject(FieldType type, Object value, ByteBuffer buffer) throws SerializeException {
+        if (value == null) return false;
+        switch (type) {
+            case STRING:
+                if (!(value instanceof String)) throw convertError(value, "String");
+                return writeString((String) value, buffer);
+            case BYTES:
+                if (!(value instanceof byte[])) throw convertError(value, "Bytes");
+                return writeLengthBytes((byte[]) value, buffer);
+            case BOOL:
+                if (!(value instanceof Boolean)) throw convertError(value, "Boolean");
+                buffer.put(((Boolean) value) ? (byte) 1 : (byte) 0);
+                return true;
+            case DATE:
+                if (value instanceof Date) {
+                    buffer.putLong(((Date) value).getTime());
+                    return true;
+                }
+                break;
+            default:
+                break;
+        }
+        if (!(value instanceof Number)) throw convertError(value, typeName(type));
+        Number number = (Number) value;
+        switch (type) {
+            case INT8:
+            case UINT8:
+                buffer.put(number.byteValue());
+                break;
+            case INT16:
+            case UINT16:
+                buffer.putShort(number.shortValue());
+                break;
+            case INT32:
+            case UINT32:
+                buffer.putInt(number.intValue());
+                break;
+            case INT64:
+            case DATE:
+                buffer.putLong(number.longValue());
+                break;
+            case FLOAT:
+                buffer.putFloat(number.floatValue());
+                break;
+            case DOUBLE:
+                buffer.putDouble(number.doubleValue());
+                break;
+            case VARINT32:
+            case UVARINT32:
+            case ZIGZAG32:
+            case VARINT64:
+            case UVARINT64:
+            case ZIGZAG64:
+                BinaryUtils.putVarint(buffer, type.toVarint(number.longValue()));
+                break;
+            default:
+                throw convertError(value, typeName(type));
+        }
+        return true;
+    }
+
+    /**
+     * 写入两个字节的长度和UTF-8编码的字符串, 直接编码到缓冲区后回填长度, 长度超出 65533 就截断
+     */
+    private static boolean writeString(String value, ByteBuffer buffer) {
+        if (value.isEmpty()) return false;
+        int lengthPosition = buffer.position();
+        buffer.putShort((short) 0);
+        int len = Utf8.encode(value, buffer, SerializeUtils.MAX_FIELD_LENGTH);
+        buffer.putShort(lengthPosition, (short) len);
+        return true;
+    }
+
+    /**
+     * 写入两个字节的长度和数组内容, 长度超出 65533 就截断
+     */
+    private static boolean writeLengthBytes(byte bytes[], ByteBuffer buffer) {
+        if (bytes.length == 0) return false;
+        int len = Math.min(bytes.length, SerializeUtils.MAX_FIELD_LENGTH);
+        buffer.putShort((short) len);
+        buffer.put(bytes, 0, len);
+        return true;
+    }
+
+    private static String typeName(FieldType type) {
+        switch (type) {
+            case INT8:
+            case UINT8:
+                return "Byte";
+            case INT16:
+            case UINT16:
+                return "Short";
+            case INT32:
+            case UINT32:
+            case VARINT32:
+            case UVARINT32:
+            case ZIGZAG32:
+                return "Integer";
+            case INT64:
+            case VARINT64:
+            case UVARINT64:
+            case ZIGZAG64:
+                return "Long";
+            case DATE:
+                return "Long(date)";
+            case FLOAT:
+                return "Float";
+            case DOUBLE:
+                return "Double";
+            case BOOL:
+                return "Boolean";
+            case STRING:
+                return "String";
+            default:
+                return "Bytes";
+        }
+    }
+
+    private static SerializeException convertError(Object value, String typeName) {
+        return new SerializeException("Can't convert type: " + value.getClass().getCanonicalName() + " ==> to " + typeName + " bytes");
+    }
+}
@@ -18,16 +18,36 @@ package org.mayanjun.pss.payload;
 
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * PayloadDescriptor representing description of an object
+ * PayloadDescriptor representing description of an object.
+ * <p>Call {@linkplain #freeze()} (or {@linkplain #compile()}) once all fields are added: the layout is then
+ * computed only once and shared by all encode/decode paths. A descriptor that is not frozen is re-laid out
+ * whenever its field list, or the name or type of one of its fields, changes.</p>
+ * <p>The id written at the head of a payload may carry a schema version: the low {@value #VERSION_SHIFT} bits
+ * are the type id and the high bits the version, see {@linkplain #PayloadDescriptor(int, int)}. An id up to
+ * {@value #MAX_TYPE_ID} is version 0 of its type, so existing ids keep their meaning. The versions of a type are
+ * read with each other's data through a {@linkplain VersionMapping}.</p>
  * @since 2020-03-21
  * @author mayanjun
  */
 public class PayloadDescriptor implements Serializable {
 
+    /**
+     * Number of low bits of the id holding the type id
+     */
+    public static final int VERSION_SHIFT = 24;
+
+    public static final int MAX_TYPE_ID = (1 << VERSION_SHIFT) - 1;
+
+    public static final int MAX_VERSION = 127;
+
     /**
      * Descriptor id or version
      */
@@ -41,6 +61,15 @@ public class PayloadDescriptor implements Serializable {
 
     private List<FieldDescriptor> fieldDescriptors = new LinkedList<FieldDescriptor>();
 
+    /**
+     * Codecs compiled for this descriptor, keyed by payload class
+     */
+    private transient volatile ConcurrentMap<Class<?>, PayloadCodec<?>> codecs;
+
+    private transient volatile PayloadLayout layout;
+
+    private boolean frozen;
+
     public PayloadDescriptor() {
     }
 
@@ -48,6 +77,16 @@ public class PayloadDescriptor implements Serializable {
         this.id = id;
     }
 
+    /**
+     * Create a descriptor of a version of a type
+     * @param typeId type id shared by all versions
+     * @param version schema version
+     * @throws IllegalArgumentException if the type id or the version is out of range
+     */
+    public PayloadDescriptor(int typeId, int version) {
+        this.id = versionedId(typeId, version);
+    }
+
     public PayloadDescriptor(int id, String name, String displayName, String description) {
         this(id, name, displayName, description, null);
     }
@@ -61,10 +100,7 @@ public class PayloadDescriptor implements Serializable {
     }
 
     public int nullFlagSize() {
-        int size = this.fieldDescriptors.size();
-        int mod8 = size % 8;
-        int byteLen = (size - mod8) / 8 + (mod8 == 0 ? 0 : 1);
-        return byteLen;
+        return layout().nullFlagSize;
     }
 
     public byte[] nullFlagBytes() {
@@ -82,9 +118,45 @@ public class PayloadDescriptor implements Serializable {
     }
 
     public void setId(int id) {
+        checkNotFrozen();
         this.id = id;
     }
 
+    /**
+     * @return type id, the low bits of the id
+     */
+    public int getTypeId() {
+        return typeId(id);
+    }
+
+    /**
+     * @return schema version, the high bits of the id
+     */
+    public int getVersion() {
+        return version(id);
+    }
+
+    /**
+     * Return the id of a version of a type
+     * @param typeId type id
+     * @param version version
+     * @return id written at the head of the payloads
+     * @throws IllegalArgumentException if the type id or the version is out of range
+     */
+    public static int versionedId(int typeId, int version) {
+        if (typeId < 0 || typeId > MAX_TYPE_ID) throw new IllegalArgumentException("Type id out of range: " + typeId);
+        if (version < 0 || version > MAX_VERSION) throw new IllegalArgumentException("Version out of range: " + version);
+        return (version << VERSION_SHIFT) | typeId;
+    }
+
+    public static int typeId(int id) {
+        return id & MAX_TYPE_ID;
+    }
+
+    public static int version(int id) {
+        return id >>> VERSION_SHIFT;
+    }
+
     public String getName() {
         return name;
     }
@@ -110,8 +182,11 @@ public class PayloadDescriptor implements Serializable {
     }
 
     public boolean addFieldDescriptor(FieldDescriptor fieldDescriptor) {
+        checkNotFrozen();
         if(fieldDescriptor.isValid()) {
             this.fieldDescriptors.add(fieldDescriptor);
+            this.codecs = null;
+            this.layout = null;
             return true;
         }
         return false;
@@ -122,8 +197,63 @@ public class PayloadDescriptor implements Serializable {
     }
 
     public void setFieldDescriptors(List<FieldDescriptor> fieldDescriptors) {
+        checkNotFrozen();
         if (fieldDescriptors != null) {
             this.fieldDescriptors = fieldDescriptors;
+            this.codecs = null;
+            this.layout = null;
+        }
+    }
+
+    /**
+     * Freeze the descriptor: the id and the fields can't be changed any more and the layout is computed once.
+     * The field descriptors themselves must not be changed either.
+     * @return this descriptor
+     */
+    public synchronized PayloadDescriptor freeze() {
+        if (!frozen) {
+            this.fieldDescriptors = Collections.unmodifiableList(new ArrayList<FieldDescriptor>(fieldDescriptors));
+            this.layout = new PayloadLayout(fieldDescriptors);
+            this.frozen = true;
+        }
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Freeze the descriptor and return its layout
+     * @return immutable layout
+     */
+    public PayloadLayout compile() {
+        return freeze().layout();
+    }
+
+    /**
+     * Return the current layout. For a descriptor that is not frozen the layout is rebuilt
+     * when the field list, or the name or type of a field, has changed.
+     */
+    PayloadLayout layout() {
+        PayloadLayout current = this.layout;
+        if (current == null || (!frozen && !current.matches(fieldDescriptors))) {
+            current = new PayloadLayout(fieldDescriptors);
+            this.layout = current;
+        }
+        return current;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) throw new IllegalStateException("Payload descriptor is frozen: " + id);
+    }
+
+    ConcurrentMap<Class<?>, PayloadCodec<?>> codecs() {
+        ConcurrentMap<Class<?>, PayloadCodec<?>> map = this.codecs;
+        if (map == null) {
+            map = new ConcurrentHashMap<Class<?>, PayloadCodec<?>>();
+            this.codecs = map;
         }
+        return map;
     }
 }
\ No newline at end of file
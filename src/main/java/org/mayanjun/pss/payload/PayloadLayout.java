@@ -0,0 +1,199 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.payload;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, array-backed layout of a {@linkplain PayloadDescriptor}: the fields, their types and type codes,
+ * the size of the null flags and the offsets of the leading fixed-size fields. All encode/decode paths
+ * work on a layout instead of the field list. Get it from {@linkplain PayloadDescriptor#compile()}.
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public final class PayloadLayout {
+
+    /**
+     * Type code of INT8/16/32/64, UINT8/16/32 and DATE fields
+     */
+    public static final byte CODE_INTEGRAL = 0;
+
+    /**
+     * Type code of FLOAT and DOUBLE fields
+     */
+    public static final byte CODE_FLOATING = 1;
+
+    /**
+     * Type code of BOOL fields
+     */
+    public static final byte CODE_BOOL = 2;
+
+    /**
+     * Type code of the length-prefixed STRING and BYTES fields
+     */
+    public static final byte CODE_LENGTH_PREFIXED = 3;
+
+    final FieldDescriptor[] fields;
+
+    final FieldType[] types;
+
+    private final String[] names;
+
+    final byte[] codes;
+
+    /**
+     * Fixed size of each field, -1 for variable length fields
+     */
+    final int[] sizes;
+
+    final int nullFlagSize;
+
+    /**
+     * Index of the first variable length field, the field count if there is none
+     */
+    final int firstVariable;
+
+    /**
+     * Offsets, relative to the first value, of the fields up to and including the first variable length one,
+     * assuming none of them is null
+     */
+    final int[] fixedOffsets;
+
+    private final Map<String, Integer> indexes;
+
+    PayloadLayout(List<FieldDescriptor> list) {
+        this.fields = list.toArray(new FieldDescriptor[list.size()]);
+        this.types = new FieldType[fields.length];
+        this.names = new String[fields.length];
+        this.codes = new byte[fields.length];
+        this.sizes = new int[fields.length];
+        this.indexes = new HashMap<String, Integer>();
+        int variable = fields.length;
+        for (int i = 0; i < fields.length; i++) {
+            FieldType type = fields[i].getType();
+            types[i] = type;
+            names[i] = fields[i].getName();
+            sizes[i] = type.getSize();
+            codes[i] = codeOf(type);
+            indexes.put(fields[i].getName(), i);
+            if (sizes[i] < 0 && variable == fields.length) variable = i;
+        }
+        this.firstVariable = variable;
+        this.fixedOffsets = new int[variable + 1];
+        for (int i = 0; i < variable; i++) {
+            fixedOffsets[i + 1] = fixedOffsets[i] + sizes[i];
+        }
+        this.nullFlagSize = (fields.length + 7) >>> 3;
+    }
+
+    /**
+     * @return true if the list still holds the same field descriptors, with the names and types
+     * this layout was built from
+     */
+    boolean matches(List<FieldDescriptor> list) {
+        if (list.size() != fields.length) return false;
+        int i = 0;
+        for (FieldDescriptor field : list) {
+            if (field != fields[i] || field.getType() != types[i]) return false;
+            String name = field.getName();
+            if (name == null ? names[i] != null : !name.equals(names[i])) return false;
+            i++;
+        }
+        return true;
+    }
+
+    static byte codeOf(FieldType type) {
+        switch (type) {
+            case FLOAT:
+            case DOUBLE:
+                return CODE_FLOATING;
+            case BOOL:
+                return CODE_BOOL;
+            case STRING:
+            case BYTES:
+                return CODE_LENGTH_PREFIXED;
+            default:
+                return CODE_INTEGRAL;
+        }
+    }
+
+    public int getFieldCount() {
+        return fields.length;
+    }
+
+    public FieldDescriptor getField(int index) {
+        return fields[index];
+    }
+
+    public FieldType getType(int index) {
+        return types[index];
+    }
+
+    /**
+     * @param index field index
+     * @return one of the CODE_* constants
+     */
+    public byte getTypeCode(int index) {
+        return codes[index];
+    }
+
+    public int getNullFlagSize() {
+        return nullFlagSize;
+    }
+
+    /**
+     * @return offset of the first field value from the head of a payload
+     */
+    public int getValuesOffset() {
+        return 4 + nullFlagSize;
+    }
+
+    /**
+     * @return index of the first variable length field, the field count if all fields have a fixed size
+     */
+    public int getFirstVariableIndex() {
+        return firstVariable;
+    }
+
+    /**
+     * Return the offset of a field value from the first value, valid for the fields up to
+     * {@linkplain #getFirstVariableIndex()} when none of the preceding fields is null
+     * @param index field index
+     * @return offset
+     */
+    public int getFixedOffset(int index) {
+        return fixedOffsets[index];
+    }
+
+    /**
+     * @return true if all fields have a fixed size
+     */
+    public boolean isFixedSize() {
+        return firstVariable == fields.length;
+    }
+
+    /**
+     * @param name field name
+     * @return index of the field, -1 if there is no such field
+     */
+    public int indexOf(String name) {
+        Integer index = indexes.get(name);
+        return index == null ? -1 : index;
+    }
+}
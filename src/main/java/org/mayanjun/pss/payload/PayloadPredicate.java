@@ -0,0 +1,502 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.payload;
+
+import org.mayanjun.pss.util.BinaryUtils;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Condition on the fields of a payload, evaluated by a {@linkplain PayloadScanner} directly on the serialized bytes.
+ * Predicates are built by field name and compiled against a descriptor:
+ * <pre>
+ * PayloadPredicate.and(PayloadPredicate.eq("status", 500), PayloadPredicate.gt("latency", 200))
+ * </pre>
+ * <ul>
+ *     <li>Integral and DATE fields compare with integral numbers, {@linkplain Date} or {@linkplain BigInteger};
+ *     unsigned types compare by their unsigned value. A BigInteger out of the 64 bits range compares as
+ *     greater or less than every value of the field. A FLOAT or DOUBLE constant compares as double.</li>
+ *     <li>FLOAT and DOUBLE fields compare with any number.</li>
+ *     <li>STRING fields compare with strings by their UTF-8 bytes, which orders them by code point.</li>
+ *     <li>BOOL and BYTES fields only support equality.</li>
+ * </ul>
+ * A comparison on a null field is false, so is its negation with {@linkplain #ne(String, Object)}; use
+ * {@linkplain #isNull(String)} to match null fields. Predicates are immutable.
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public abstract class PayloadPredicate {
+
+    private static final int EQ = 0;
+    private static final int NE = 1;
+    private static final int LT = 2;
+    private static final int LE = 3;
+    private static final int GT = 4;
+    private static final int GE = 5;
+
+    private static final String OPERATORS[] = {"==", "!=", "<", "<=", ">", ">="};
+
+    PayloadPredicate() {
+    }
+
+    public static PayloadPredicate eq(String field, Object value) {
+        return new Comparison(field, EQ, value);
+    }
+
+    public static PayloadPredicate ne(String field, Object value) {
+        return new Comparison(field, NE, value);
+    }
+
+    public static PayloadPredicate lt(String field, Object value) {
+        return new Comparison(field, LT, value);
+    }
+
+    public static PayloadPredicate le(String field, Object value) {
+        return new Comparison(field, LE, value);
+    }
+
+    public static PayloadPredicate gt(String field, Object value) {
+        return new Comparison(field, GT, value);
+    }
+
+    public static PayloadPredicate ge(String field, Object value) {
+        return new Comparison(field, GE, value);
+    }
+
+    /**
+     * Match a field equal to one of the values
+     * @param field field name
+     * @param values candidates
+     * @return predicate
+     */
+    public static PayloadPredicate in(String field, Object... values) {
+        return new In(field, values.clone());
+    }
+
+    public static PayloadPredicate isNull(String field) {
+        return new NullCheck(field, true);
+    }
+
+    public static PayloadPredicate notNull(String field) {
+        return new NullCheck(field, false);
+    }
+
+    public static PayloadPredicate and(PayloadPredicate... predicates) {
+        return new Junction(true, predicates.clone());
+    }
+
+    public static PayloadPredicate or(PayloadPredicate... predicates) {
+        return new Junction(false, predicates.clone());
+    }
+
+    public static PayloadPredicate not(PayloadPredicate predicate) {
+        return new Not(predicate);
+    }
+
+    /**
+     * Resolve the fields and convert the constants for the layout
+     * @throws IllegalArgumentException if a field doesn't exist or a constant doesn't apply to its type
+     */
+    abstract Matcher compile(PayloadLayout layout);
+
+    /**
+     * Compiled predicate
+     */
+    abstract static class Matcher {
+
+        abstract boolean matches(PayloadView view);
+    }
+
+    private static int index(PayloadLayout layout, String field) {
+        int index = layout.indexOf(field);
+        if (index < 0) throw new IllegalArgumentException("No such field: " + field);
+        return index;
+    }
+
+    private static String show(Object value) {
+        if (value instanceof String) return "\"" + value + "\"";
+        if (value instanceof byte[]) return Arrays.toString((byte[]) value);
+        return String.valueOf(value);
+    }
+
+    private static boolean test(int operator, int compare) {
+        switch (operator) {
+            case EQ:
+                return compare == 0;
+            case NE:
+                return compare != 0;
+            case LT:
+                return compare < 0;
+            case LE:
+                return compare <= 0;
+            case GT:
+                return compare > 0;
+            default:
+                return compare >= 0;
+        }
+    }
+
+    /**
+     * Build the matcher of a comparison with one constant, shared by {@linkplain Comparison} and {@linkplain In}
+     */
+    private static Matcher compare(PayloadLayout layout, String field, int operator, Object value) {
+        int index = index(layout, field);
+        FieldType type = layout.types[index];
+        if (value == null) throw new IllegalArgumentException("Null constant for field " + field + ", use isNull");
+        switch (type) {
+            case BOOL:
+                if (!(value instanceof Boolean) || operator > NE) throw constantError(field, type, operator, value);
+                return new BooleanMatcher(index, operator, (Boolean) value);
+            case STRING:
+                if (!(value instanceof CharSequence)) throw constantError(field, type, operator, value);
+                return new BytesMatcher(index, operator, value.toString().getBytes(StandardCharsets.UTF_8));
+            case BYTES:
+                if (!(value instanceof byte[]) || operator > NE) throw constantError(field, type, operator, value);
+                return new BytesMatcher(index, operator, (byte[]) value);
+            case FLOAT:
+            case DOUBLE:
+                if (!(value instanceof Number)) throw constantError(field, type, operator, value);
+                return new DoubleMatcher(index, type, operator, ((Number) value).doubleValue());
+            default:
+                if (value instanceof Date) return new LongMatcher(index, type, operator, ((Date) value).getTime());
+                if (value instanceof Float || value instanceof Double) {
+                    return new DoubleMatcher(index, type, operator, ((Number) value).doubleValue());
+                }
+                if (value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long) {
+                    return new LongMatcher(index, type, operator, ((Number) value).longValue());
+                }
+                if (value instanceof BigInteger) return compare(index, type, operator, (BigInteger) value);
+                throw constantError(field, type, operator, value);
+        }
+    }
+
+    private static Matcher compare(final int index, FieldType type, int operator, BigInteger value) {
+        boolean inRange = type == FieldType.UVARINT64
+                ? value.signum() >= 0 && value.bitLength() <= 64
+                : value.bitLength() <= 63;
+        if (inRange) return new LongMatcher(index, type, operator, value.longValue());
+        // the constant is beyond every value of the field, the comparison is the same for all of them
+        final boolean result = test(operator, -value.signum());
+        return new Matcher() {
+            @Override
+            boolean matches(PayloadView view) {
+                return result && !view.isNull(index);
+            }
+        };
+    }
+
+    private static IllegalArgumentException constantError(String field, FieldType type, int operator, Object value) {
+        return new IllegalArgumentException("Can't compare " + type + " field " + field + " " + OPERATORS[operator]
+                + " " + value.getClass().getCanonicalName());
+    }
+
+    private static final class Comparison extends PayloadPredicate {
+
+        private final String field;
+        private final int operator;
+        private final Object value;
+
+        Comparison(String field, int operator, Object value) {
+            this.field = field;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Override
+        Matcher compile(PayloadLayout layout) {
+            return compare(layout, field, operator, value);
+        }
+
+        @Override
+        public String toString() {
+            return field + " " + OPERATORS[operator] + " " + show(value);
+        }
+    }
+
+    private static final class In extends PayloadPredicate {
+
+        private final String field;
+        private final Object values[];
+
+        In(String field, Object values[]) {
+            this.field = field;
+            this.values = values;
+        }
+
+        @Override
+        Matcher compile(PayloadLayout layout) {
+            final int index = index(layout, field);
+            FieldType type = layout.types[index];
+            if (type.isIntegral()) {
+                // sorted constants, found by binary search
+                final long constants[] = new long[values.length];
+                boolean exact = true;
+                for (int i = 0; i < values.length && exact; i++) {
+                    Matcher matcher = compare(layout, field, EQ, values[i]);
+                    if (matcher instanceof LongMatcher) {
+                        constants[i] = ((LongMatcher) matcher).constant;
+                    } else {
+                        exact = false;
+                    }
+                }
+                if (exact) {
+                    Arrays.sort(constants);
+                    final FieldType fieldType = type;
+                    return new Matcher() {
+                        @Override
+                        boolean matches(PayloadView view) {
+                            int offset = view.offset(index);
+                            if (offset < 0) return false;
+                            long value = fieldType.unsignedLong(fieldType.readLong(view.getBuffer(), offset));
+                            return Arrays.binarySearch(constants, value) >= 0;
+                        }
+                    };
+                }
+            }
+            Matcher matchers[] = new Matcher[values.length];
+            for (int i = 0; i < values.length; i++) {
+                matchers[i] = compare(layout, field, EQ, values[i]);
+            }
+            return new JunctionMatcher(false, matchers);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(field).append(" IN (");
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) builder.append(", ");
+                builder.append(show(values[i]));
+            }
+            return builder.append(')').toString();
+        }
+    }
+
+    private static final class NullCheck extends PayloadPredicate {
+
+        private final String field;
+        private final boolean isNull;
+
+        NullCheck(String field, boolean isNull) {
+            this.field = field;
+            this.isNull = isNull;
+        }
+
+        @Override
+        Matcher compile(PayloadLayout layout) {
+            final int index = index(layout, field);
+            return new Matcher() {
+                @Override
+                boolean matches(PayloadView view) {
+                    return view.isNull(index) == isNull;
+                }
+            };
+        }
+
+        @Override
+        public String toString() {
+            return field + (isNull ? " IS NULL" : " IS NOT NULL");
+        }
+    }
+
+    private static final class Junction extends PayloadPredicate {
+
+        private final boolean and;
+        private final PayloadPredicate predicates[];
+
+        Junction(boolean and, PayloadPredicate predicates[]) {
+            this.and = and;
+            this.predicates = predicates;
+        }
+
+        @Override
+        Matcher compile(PayloadLayout layout) {
+            Matcher matchers[] = new Matcher[predicates.length];
+            for (int i = 0; i < predicates.length; i++) {
+                matchers[i] = predicates[i].compile(layout);
+            }
+            return new JunctionMatcher(and, matchers);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("(");
+            for (int i = 0; i < predicates.length; i++) {
+                if (i > 0) builder.append(and ? " AND " : " OR ");
+                builder.append(predicates[i]);
+            }
+            return builder.append(')').toString();
+        }
+    }
+
+    private static final class Not extends PayloadPredicate {
+
+        private final PayloadPredicate predicate;
+
+        Not(PayloadPredicate predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        Matcher compile(PayloadLayout layout) {
+            final Matcher matcher = predicate.compile(layout);
+            return new Matcher() {
+                @Override
+                boolean matches(PayloadView view) {
+                    return !matcher.matches(view);
+                }
+            };
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + predicate;
+        }
+    }
+
+    private static final class JunctionMatcher extends Matcher {
+
+        private final boolean and;
+        private final Matcher matchers[];
+
+        JunctionMatcher(boolean and, Matcher matchers[]) {
+            this.and = and;
+            this.matchers = matchers;
+        }
+
+        @Override
+        boolean matches(PayloadView view) {
+            for (Matcher matcher : matchers) {
+                if (matcher.matches(view) != and) return !and;
+            }
+            return and;
+        }
+    }
+
+    private static final class LongMatcher extends Matcher {
+
+        private final int index;
+        private final FieldType type;
+        private final int operator;
+        private final long constant;
+
+        LongMatcher(int index, FieldType type, int operator, long constant) {
+            this.index = index;
+            this.type = type;
+            this.operator = operator;
+            this.constant = constant;
+        }
+
+        @Override
+        boolean matches(PayloadView view) {
+            int offset = view.offset(index);
+            if (offset < 0) return false;
+            long value = type.readLong(view.getBuffer(), offset);
+            int compare = type == FieldType.UVARINT64
+                    ? Long.compareUnsigned(value, constant)
+                    : Long.compare(type.unsignedLong(value), constant);
+            return test(operator, compare);
+        }
+    }
+
+    private static final class DoubleMatcher extends Matcher {
+
+        private final int index;
+        private final FieldType type;
+        private final int operator;
+        private final double constant;
+
+        DoubleMatcher(int index, FieldType type, int operator, double constant) {
+            this.index = index;
+            this.type = type;
+            this.operator = operator;
+            this.constant = constant;
+        }
+
+        @Override
+        boolean matches(PayloadView view) {
+            int offset = view.offset(index);
+            if (offset < 0) return false;
+            double value;
+            if (type.isIntegral()) {
+                long bits = type.unsignedLong(type.readLong(view.getBuffer(), offset));
+                value = type == FieldType.UVARINT64 && bits < 0 ? (bits >>> 1) * 2.0 + (bits & 1) : bits;
+            } else {
+                value = type.readDouble(view.getBuffer(), offset);
+            }
+            // NaN is neither equal, less nor greater than anything
+            if (value != value || constant != constant) return operator == NE;
+            return test(operator, Double.compare(value == 0 ? 0.0 : value, constant == 0 ? 0.0 : constant));
+        }
+    }
+
+    private static final class BooleanMatcher extends Matcher {
+
+        private final int index;
+        private final int operator;
+        private final boolean constant;
+
+        BooleanMatcher(int index, int operator, boolean constant) {
+            this.index = index;
+            this.operator = operator;
+            this.constant = constant;
+        }
+
+        @Override
+        boolean matches(PayloadView view) {
+            int offset = view.offset(index);
+            if (offset < 0) return false;
+            return (FieldType.BOOL.readBoolean(view.getBuffer(), offset) == constant) == (operator == EQ);
+        }
+    }
+
+    /**
+     * Compares the length-prefixed bytes of a STRING or BYTES field as unsigned bytes, without copying them
+     */
+    private static final class BytesMatcher extends Matcher {
+
+        private final int index;
+        private final int operator;
+        private final byte constant[];
+
+        BytesMatcher(int index, int operator, byte constant[]) {
+            this.index = index;
+            this.operator = operator;
+            this.constant = constant;
+        }
+
+        @Override
+        boolean matches(PayloadView view) {
+            int offset = view.offset(index);
+            if (offset < 0) return false;
+            ByteBuffer buffer = view.getBuffer();
+            int len = BinaryUtils.uint16ToInt(buffer.getShort(offset));
+            if (operator <= NE && len != constant.length) return operator == NE;
+            int start = offset + 2;
+            int n = Math.min(len, constant.length);
+            int compare = 0;
+            for (int i = 0; i < n && compare == 0; i++) {
+                compare = (buffer.get(start + i) & 0xFF) - (constant[i] & 0xFF);
+            }
+            if (compare == 0) compare = len - constant.length;
+            return test(operator, compare);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.payload;
+
+import org.mayanjun.pss.DeserializeException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registry of payload descriptors by id, used to decode streams where payloads of different types are interleaved.
+ * The descriptor of a payload is found from the id at its head. Lookups go through an open-addressing table of
+ * primitive int keys without locking or boxing; registration copies the table, so it is meant to happen up front.
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public class PayloadRegistry {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private volatile Table table = new Table(MIN_CAPACITY);
+
+    public PayloadRegistry() {
+    }
+
+    public PayloadRegistry(PayloadDescriptor... descriptors) {
+        for (PayloadDescriptor descriptor : descriptors) {
+            register(descriptor);
+        }
+    }
+
+    /**
+     * Register a descriptor under its id
+     * @param descriptor payload descriptor
+     * @return this registry
+     * @throws IllegalArgumentException if another descriptor is registered with the same id
+     */
+    public synchronized PayloadRegistry register(PayloadDescriptor descriptor) {
+        Table current = this.table;
+        PayloadDescriptor existing = current.get(descriptor.getId());
+        if (existing == descriptor) return this;
+        if (existing != null) {
+            throw new IllegalArgumentException("Duplicate payload descriptor id: " + descriptor.getId());
+        }
+        descriptor.layout();
+        Table copy = current.copy((current.size + 1) * 2 > current.keys.length ? current.keys.length * 2 : current.keys.length);
+        copy.put(descriptor.getId(), descriptor);
+        this.table = copy;
+        return this;
+    }
+
+    /**
+     * Remove the descriptor registered under the id
+     * @param id descriptor id
+     * @return removed descriptor, null if none
+     */
+    public synchronized PayloadDescriptor unregister(int id) {
+        Table current = this.table;
+        PayloadDescriptor existing = current.get(id);
+        if (existing == null) return null;
+        Table copy = new Table(current.keys.length);
+        for (int i = 0; i < current.keys.length; i++) {
+            PayloadDescriptor d = current.values[i];
+            if (d != null && current.keys[i] != id) copy.put(current.keys[i], d);
+        }
+        this.table = copy;
+        return existing;
+    }
+
+    /**
+     * @param id descriptor id
+     * @return registered descriptor, null if none
+     */
+    public PayloadDescriptor get(int id) {
+        return table.get(id);
+    }
+
+    public boolean contains(int id) {
+        return table.get(id) != null;
+    }
+
+    public int size() {
+        return table.size;
+    }
+
+    public List<PayloadDescriptor> descriptors() {
+        Table current = this.table;
+        List<PayloadDescriptor> list = new ArrayList<PayloadDescriptor>(current.size);
+        for (PayloadDescriptor d : current.values) {
+            if (d != null) list.add(d);
+        }
+        return list;
+    }
+
+    /**
+     * Return the descriptor of the payload starting at the current position of the buffer
+     * @param buffer big-endian buffer
+     * @return descriptor
+     * @throws DeserializeException if fewer than 4 bytes remain or the id isn't registered
+     */
+    public PayloadDescriptor descriptorOf(ByteBuffer buffer) throws DeserializeException {
+        if (buffer.remaining() < 4) throw new DeserializeException("Buffer underflow, no payload id");
+        return required(buffer.getInt(buffer.position()));
+    }
+
+    /**
+     * Deserialize the payload starting at the current position of the buffer with the descriptor of its id
+     * @param buffer big-endian buffer
+     * @return payload
+     * @throws DeserializeException if the id isn't registered or the payload is malformed
+     */
+    public Payload deserialize(ByteBuffer buffer) throws DeserializeException {
+        return Payloads.deserialize(descriptorOf(buffer), buffer);
+    }
+
+    public Payload deserialize(byte [] payload) throws DeserializeException {
+        return deserialize(ByteBuffer.wrap(payload));
+    }
+
+    private PayloadDescriptor required(int id) throws DeserializeException {
+        PayloadDescriptor descriptor = table.get(id);
+        if (descriptor == null) throw new DeserializeException("Unknown payload descriptor id: " + id);
+        return descriptor;
+    }
+
+    /**
+     * Open-addressing table with linear probing, never modified once published
+     */
+    private static final class Table {
+
+        private final int keys[];
+        private final PayloadDescriptor values[];
+        private final int mask;
+        private int size;
+
+        Table(int capacity) {
+            this.keys = new int[capacity];
+            this.values = new PayloadDescriptor[capacity];
+            this.mask = capacity - 1;
+        }
+
+        private static int hash(int id) {
+            int h = id * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        PayloadDescriptor get(int id) {
+            int i = hash(id) & mask;
+            while (true) {
+                PayloadDescriptor d = values[i];
+                if (d == null) return null;
+                if (keys[i] == id) return d;
+                i = (i + 1) & mask;
+            }
+        }
+
+        void put(int id, PayloadDescriptor descriptor) {
+            int i = hash(id) & mask;
+            while (values[i] != null) {
+                if (keys[i] == id) {
+                    values[i] = descriptor;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = id;
+            values[i] = descriptor;
+            size++;
+        }
+
+        Table copy(int capacity) {
+            Table copy = new Table(capacity);
+            for (int i = 0; i < keys.length; i++) {
+                if (values[i] != null) copy.put(keys[i], values[i]);
+            }
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.payload;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Finds the serialized payloads matching a {@linkplain PayloadPredicate} without deserializing them: the predicate
+ * is compiled against the descriptor once and evaluated through a {@linkplain PayloadView} on the raw bytes, reading
+ * only the fields it needs. Payloads of another descriptor id never match, so a stream mixing several descriptors
+ * can be scanned for one of them.
+ * <p>A scanner reuses one view and is not thread safe.</p>
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public class PayloadScanner {
+
+    /**
+     * Receives the matching payloads of a scan
+     */
+    public interface MatchHandler {
+
+        /**
+         * @param view view of the matching payload, only valid during the call
+         * @param offset absolute offset of the payload in the scanned buffer
+         * @return false to stop the scan
+         */
+        boolean matched(PayloadView view, int offset);
+    }
+
+    private final PayloadDescriptor descriptor;
+
+    private final PayloadPredicate predicate;
+
+    private final PayloadPredicate.Matcher matcher;
+
+    private final PayloadView view;
+
+    /**
+     * @param descriptor descriptor of the payloads to match
+     * @param predicate condition
+     * @throws IllegalArgumentException if the predicate doesn't apply to the descriptor
+     */
+    public PayloadScanner(PayloadDescriptor descriptor, PayloadPredicate predicate) {
+        this.descriptor = descriptor;
+        this.predicate = predicate;
+        this.view = new PayloadView(descriptor);
+        this.matcher = predicate.compile(view.getLayout());
+    }
+
+    public PayloadDescriptor getDescriptor() {
+        return descriptor;
+    }
+
+    public PayloadPredicate getPredicate() {
+        return predicate;
+    }
+
+    /**
+     * Test the payload at an absolute offset of the buffer
+     * @param buffer big-endian buffer
+     * @param offset offset of the payload
+     * @return true if the payload has the descriptor id and matches
+     */
+    public boolean matches(ByteBuffer buffer, int offset) {
+        if (buffer.getInt(offset) != descriptor.getId()) return false;
+        return matcher.matches(view.wrap(buffer, offset));
+    }
+
+    public boolean matches(byte payload[]) {
+        return matches(ByteBuffer.wrap(payload), 0);
+    }
+
+    /**
+     * Test the payload a view points at
+     * @param view view of the descriptor of this scanner
+     * @return true if the payload has the descriptor id and matches
+     */
+    public boolean matches(PayloadView view) {
+        if (view.getLayout() != this.view.getLayout()) {
+            throw new IllegalArgumentException("View of another descriptor: " + view.getDescriptor().getId());
+        }
+        return view.getDescriptorId() == descriptor.getId() && matcher.matches(view);
+    }
+
+    /**
+     * Scan the frames written by {@linkplain org.mayanjun.pss.io.PayloadStreamWriter}, a 4 bytes length followed
+     * by the payload, from the position to the limit of the buffer. An incomplete trailing frame is ignored.
+     * The position of the buffer is not changed.
+     * @param buffer buffer of frames
+     * @param handler receives the matching payloads
+     * @return number of matching payloads
+     */
+    public int scanFrames(ByteBuffer buffer, MatchHandler handler) {
+        ByteBuffer frames = buffer.order() == ByteOrder.BIG_ENDIAN ? buffer : buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int matches = 0;
+        int pos = frames.position();
+        int limit = frames.limit();
+        while (pos + 4 <= limit) {
+            int len = frames.getInt(pos);
+            if (len < 4 || pos + 4 + len > limit) break;
+            int offset = pos + 4;
+            pos = offset + len;
+            if (matches(frames, offset)) {
+                matches++;
+                if (!handler.matched(view, offset)) break;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Return the indexes of the matching payloads
+     * @param payloads serialized payloads
+     * @return indexes in ascending order
+     */
+    public int[] scan(EncodedPayloads payloads) {
+        ByteBuffer buffer = ByteBuffer.wrap(payloads.getData());
+        int result[] = new int[16];
+        int count = 0;
+        for (int i = 0; i < payloads.size(); i++) {
+            if (payloads.length(i) >= 4 && matches(buffer, payloads.offset(i))) {
+                if (count == result.length) result = Arrays.copyOf(result, count * 2);
+                result[count++] = i;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.payload;
+
+import org.mayanjun.pss.util.BinaryUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Date;
+
+/**
+ * A lazy, reusable view of a serialized payload. Nothing is decoded when the view is pointed
+ * at a record; a field is decoded only when it is read. Offsets of the leading fixed-size fields are
+ * taken from the {@linkplain PayloadLayout}, the offsets of the others are resolved on demand by walking the
+ * null flags and the length prefixes of STRING/BYTES fields. {@linkplain #wrap(ByteBuffer, int)}
+ * re-points the view at another record without allocating, so one view can scan a whole buffer.
+ * <p>A view is not thread safe. The buffer must be big-endian and must not be modified while it is viewed.</p>
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public final class PayloadView {
+
+    private final PayloadDescriptor descriptor;
+
+    private final PayloadLayout layout;
+
+    private final FieldDescriptor[] fields;
+
+    private final FieldType[] types;
+
+    private final int[] sizes;
+
+    private final int nullFlagSize;
+
+    private final int firstVariable;
+
+    private final int[] fixedOffsets;
+
+    private final int[] offsets;
+
+    private ByteBuffer buffer;
+
+    private int base;
+
+    private int valuesStart;
+
+    private boolean noNulls;
+
+    /**
+     * Number of fields whose offset is resolved
+     */
+    private int resolved;
+
+    /**
+     * Position after the last resolved field
+     */
+    private int cursor;
+
+    public PayloadView(PayloadDescriptor descriptor) {
+        this.descriptor = descriptor;
+        this.layout = descriptor.layout();
+        this.fields = layout.fields;
+        this.types = layout.types;
+        this.sizes = layout.sizes;
+        this.nullFlagSize = layout.nullFlagSize;
+        this.firstVariable = layout.firstVariable;
+        this.fixedOffsets = layout.fixedOffsets;
+        this.offsets = new int[fields.length];
+    }
+
+    public PayloadDescriptor getDescriptor() {
+        return descriptor;
+    }
+
+    public PayloadLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Point the view at the payload starting at the current position of the buffer.
+     * The position of the buffer is not changed.
+     * @param buffer big-endian buffer
+     * @return this view
+     */
+    public PayloadView wrap(ByteBuffer buffer) {
+        return wrap(buffer, buffer.position());
+    }
+
+    /**
+     * Point the view at the payload starting at an absolute offset of the buffer
+     * @param buffer big-endian buffer
+     * @param offset offset of the payload
+     * @return this view
+     */
+    public PayloadView wrap(ByteBuffer buffer, int offset) {
+        if (buffer.order() != ByteOrder.BIG_ENDIAN) throw new IllegalArgumentException("Buffer must be big-endian");
+        this.buffer = buffer;
+        this.base = offset;
+        this.valuesStart = offset + 4 + nullFlagSize;
+        boolean nulls = false;
+        for (int i = 0; i < nullFlagSize; i++) {
+            if (buffer.get(offset + 4 + i) != 0) {
+                nulls = true;
+                break;
+            }
+        }
+        this.noNulls = !nulls;
+        if (noNulls) {
+            this.resolved = firstVariable;
+            this.cursor = valuesStart + fixedOffsets[firstVariable];
+        } else {
+            this.resolved = 0;
+            this.cursor = valuesStart;
+        }
+        return this;
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return offset of the payload in the buffer
+     */
+    public int getOffset() {
+        return base;
+    }
+
+    /**
+     * @return the id written at the head of the payload
+     */
+    public int getDescriptorId() {
+        return buffer.getInt(base);
+    }
+
+    /**
+     * Return the serialized length of the payload, resolving the offsets of all fields
+     * @return length in bytes
+     */
+    public int length() {
+        if (fields.length > 0) offset(fields.length - 1);
+        return cursor - base;
+    }
+
+    public int fieldCount() {
+        return fields.length;
+    }
+
+    public FieldDescriptor fieldDescriptor(int index) {
+        return fields[index];
+    }
+
+    /**
+     * Return the index of a field
+     * @param name field name
+     * @return index, -1 if the descriptor has no such field
+     */
+    public int indexOf(String name) {
+        return layout.indexOf(name);
+    }
+
+    public boolean isNull(int index) {
+        return (buffer.get(base + 4 + (index >>> 3)) & (1 << (index & 7))) != 0;
+    }
+
+    public boolean isNull(String name) {
+        return isNull(index(name));
+    }
+
+    /**
+     * Read a field as the same object {@linkplain FieldType#deserialize(ByteBuffer)} returns
+     * @param index field index
+     * @return value, null for a null field
+     */
+    public Object get(int index) {
+        int offset = offset(index);
+        if (offset < 0) return null;
+        FieldType type = types[index];
+        switch (type) {
+            case INT8:
+            case UINT8:
+                return (byte) type.readLong(buffer, offset);
+            case INT16:
+            case UINT16:
+                return (short) type.readLong(buffer, offset);
+            case INT32:
+            case UINT32:
+            case VARINT32:
+            case UVARINT32:
+            case ZIGZAG32:
+                return (int) type.readLong(buffer, offset);
+            case INT64:
+            case VARINT64:
+            case UVARINT64:
+            case ZIGZAG64:
+                return type.readLong(buffer, offset);
+            case DATE:
+                return new Date(type.readLong(buffer, offset));
+            case FLOAT:
+                return (float) type.readDouble(buffer, offset);
+            case DOUBLE:
+                return type.readDouble(buffer, offset);
+            case BOOL:
+                return type.readBoolean(buffer, offset) ? Boolean.TRUE : Boolean.FALSE;
+            case STRING:
+                return getString(index);
+            default:
+                return getBytes(index);
+        }
+    }
+
+    public Object get(String name) {
+        return get(index(name));
+    }
+
+    public byte getByte(int index) {
+        return (byte) integral(index);
+    }
+
+    public byte getByte(String name) {
+        return getByte(index(name));
+    }
+
+    public short getShort(int index) {
+        return (short) integral(index);
+    }
+
+    public short getShort(String name) {
+        return getShort(index(name));
+    }
+
+    public int getInt(int index) {
+        return (int) integral(index);
+    }
+
+    public int getInt(String name) {
+        return getInt(index(name));
+    }
+
+    /**
+     * Read an integral or DATE field, DATE fields are returned as epoch milliseconds
+     */
+    public long getLong(int index) {
+        return integral(index);
+    }
+
+    public long getLong(String name) {
+        return getLong(index(name));
+    }
+
+    /**
+     * Read the low 8 bits of an integral field as unsigned value
+     */
+    public int getUnsignedByte(int index) {
+        return (int) (integral(index) & 0xFFL);
+    }
+
+    public int getUnsignedByte(String name) {
+        return getUnsignedByte(index(name));
+    }
+
+    /**
+     * Read the low 16 bits of an integral field as unsigned value
+     */
+    public int getUnsignedShort(int index) {
+        return (int) (integral(index) & 0xFFFFL);
+    }
+
+    public int getUnsignedShort(String name) {
+        return getUnsignedShort(index(name));
+    }
+
+    /**
+     * Read the low 32 bits of an integral field as unsigned value
+     */
+    public long getUnsignedInt(int index) {
+        return integral(index) & 0xFFFFFFFFL;
+    }
+
+    public long getUnsignedInt(String name) {
+        return getUnsignedInt(index(name));
+    }
+
+    /**
+     * Read a DATE (or integral) field as epoch milliseconds without allocating a {@linkplain Date}
+     */
+    public long getEpochMillis(int index) {
+        return integral(index);
+    }
+
+    public long getEpochMillis(String name) {
+        return getEpochMillis(index(name));
+    }
+
+    public float getFloat(int index) {
+        return (float) getDouble(index);
+    }
+
+    public float getFloat(String name) {
+        return getFloat(index(name));
+    }
+
+    /**
+     * Read a FLOAT or DOUBLE field, integral fields are converted
+     */
+    public double getDouble(int index) {
+        if (!types[index].isIntegral() && layout.codes[index] != PayloadLayout.CODE_FLOATING) throw typeError(index, "numeric");
+        return types[index].readDouble(buffer, nonNullOffset(index));
+    }
+
+    public double getDouble(String name) {
+        return getDouble(index(name));
+    }
+
+    public boolean getBoolean(int index) {
+        if (types[index] != FieldType.BOOL) throw typeError(index, "boolean");
+        return types[index].readBoolean(buffer, nonNullOffset(index));
+    }
+
+    public boolean getBoolean(String name) {
+        return getBoolean(index(name));
+    }
+
+    /**
+     * @return the string, null for a null field
+     */
+    public String getString(int index) {
+        if (types[index] != FieldType.STRING) throw typeError(index, "string");
+        int offset = offset(index);
+        if (offset < 0) return null;
+        return Payloads.decodeString(buffer, offset + 2, BinaryUtils.uint16ToInt(buffer.getShort(offset)));
+    }
+
+    public String getString(String name) {
+        return getString(index(name));
+    }
+
+    /**
+     * @return a copy of the bytes, null for a null field
+     */
+    public byte[] getBytes(int index) {
+        if (types[index] != FieldType.BYTES) throw typeError(index, "bytes");
+        int offset = offset(index);
+        if (offset < 0) return null;
+        return copy(offset + 2, BinaryUtils.uint16ToInt(buffer.getShort(offset)));
+    }
+
+    public byte[] getBytes(String name) {
+        return getBytes(index(name));
+    }
+
+    private byte[] copy(int offset, int len) {
+        byte bytes[] = new byte[len];
+        for (int i = 0; i < len; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return bytes;
+    }
+
+    private long integral(int index) {
+        if (!types[index].isIntegral() && layout.codes[index] != PayloadLayout.CODE_FLOATING) throw typeError(index, "numeric");
+        return types[index].readLong(buffer, nonNullOffset(index));
+    }
+
+    private int index(String name) {
+        int index = layout.indexOf(name);
+        if (index < 0) throw new IllegalArgumentException("No such field: " + name);
+        return index;
+    }
+
+    private int nonNullOffset(int index) {
+        int offset = offset(index);
+        if (offset < 0) throw new IllegalStateException("Field is null: " + fields[index].getName());
+        return offset;
+    }
+
+    /**
+     * Return the absolute offset of a field value, -1 for a null field
+     */
+    int offset(int index) {
+        if (index < resolved) {
+            return noNulls && index < firstVariable ? valuesStart + fixedOffsets[index] : offsets[index];
+        }
+        if (index >= fields.length) throw new IndexOutOfBoundsException("Field index: " + index);
+        int pos = cursor;
+        for (int i = resolved; i <= index; i++) {
+            if (isNull(i)) {
+                offsets[i] = -1;
+            } else {
+                offsets[i] = pos;
+                int size = sizes[i];
+                pos += size >= 0 ? size : types[i].encodedLength(buffer, pos);
+            }
+        }
+        resolved = index + 1;
+        cursor = pos;
+        return offsets[index];
+    }
+
+    private IllegalArgumentException typeError(int index, String expected) {
+        return new IllegalArgumentException("Field " + fields[index].getName() + " is " + types[index] + ", not a " + expected + " field");
+    }
+}
@@ -16,17 +16,25 @@
 
 package org.mayanjun.pss.payload;
 
-import org.apache.commons.beanutils.PropertyUtils;
 import org.mayanjun.pss.DeserializeException;
 import org.mayanjun.pss.SerializeException;
+import org.mayanjun.pss.metrics.PayloadListener;
+import org.mayanjun.pss.util.BinaryUtils;
+import org.mayanjun.pss.util.BufferPool;
+import org.mayanjun.pss.util.StringCache;
+import org.mayanjun.pss.util.Utf8;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Payloads utils
@@ -37,9 +45,77 @@ public class Payloads {
 
     private static final Logger LOG = LoggerFactory.getLogger(Payloads.class);
 
+    /**
+     * Cache used to decode STRING values, none by default
+     */
+    private static volatile StringCache stringCache;
+
+    /**
+     * Pool of the buffers used to serialize, none by default
+     */
+    private static volatile BufferPool bufferPool;
+
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 4096;
+
+    /**
+     * Lists smaller than this are serialized and deserialized in the calling thread
+     */
+    private static volatile int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**
+     * Listeners by descriptor id, replaced on every change so that the codec reads it without locking
+     */
+    private static volatile Map<Integer, PayloadListener> listeners = Collections.emptyMap();
+
     private Payloads() {
     }
 
+    /**
+     * 设置反序列化字符串时使用的缓存: 重复的字符串值只解码一次, 之后直接返回缓存的实例
+     * @param cache string cache, null to disable caching
+     */
+    public static void setStringCache(StringCache cache) {
+        stringCache = cache;
+    }
+
+    public static StringCache getStringCache() {
+        return stringCache;
+    }
+
+    /**
+     * 设置序列化时使用的缓冲池, 用于 {@linkplain #serializePooled(PayloadDescriptor, Object)} 和写入输出流
+     * @param pool buffer pool, null to allocate a buffer per call
+     */
+    public static void setBufferPool(BufferPool pool) {
+        bufferPool = pool;
+    }
+
+    public static BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Read a length-prefixed STRING value at the current position of the buffer and move the position after it
+     * @return string, null for an empty one
+     */
+    static String readString(ByteBuffer buffer) {
+        int offset = buffer.position();
+        int len = BinaryUtils.uint16ToInt(buffer.getShort(offset));
+        if (offset + 2 + len > buffer.limit()) throw new BufferUnderflowException();
+        buffer.position(offset + 2 + len);
+        if (len == 0) return null;
+        return decodeString(buffer, offset + 2, len);
+    }
+
+    /**
+     * Decode UTF-8 bytes at an absolute offset of the buffer, through the string cache if one is set
+     */
+    static String decodeString(ByteBuffer buffer, int offset, int len) {
+        StringCache cache = stringCache;
+        if (cache != null) return cache.get(buffer, offset, len);
+        return Utf8.decode(buffer, offset, len);
+    }
+
     /**
      * 序列化一个Payload
      * @param payloadDescriptor pd
@@ -47,24 +123,182 @@ public class Payloads {
      * @return
      */
     public static byte[] serialize(PayloadDescriptor payloadDescriptor, Object payload) throws SerializeException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        serialize(payloadDescriptor, payload, out);
-        return out.toByteArray();
+        if (payload == null) throw new SerializeException("No payload specified");
+        return codec(payloadDescriptor, payload.getClass()).serialize(payload);
     }
 
+    /**
+     * 序列化Payload并写入缓冲区当前位置, 每个字段直接写入缓冲区而不分配临时数组
+     * @param payloadDescriptor pd
+     * @param payload payload
+     * @param buffer heap or direct buffer
+     * @throws SerializeException if the buffer is too small or a value can't be converted
+     */
+    public static void serialize(PayloadDescriptor payloadDescriptor, Object payload, ByteBuffer buffer) throws SerializeException {
+        if (payload == null) throw new SerializeException("No payload specified");
+        codec(payloadDescriptor, payload.getClass()).serialize(payload, buffer);
+    }
 
-    private static void setNullBitFlag( byte nullFlagBytes[], int index) {
-        int size = index + 1;
-        int mod = size % 8;
-        int b0 = (size - mod) / 8;
-        int b1 = (mod == 0 ? 0 : 1);
-        int bytesLen = b0 + b1;
-        int byteIndex = bytesLen - 1;
-        int bitIndex = index % 8;
-        byte setByte = (byte) (0x01 << bitIndex);
-        nullFlagBytes[byteIndex] = (byte) (nullFlagBytes[byteIndex] | setByte);
+    /**
+     * 序列化Payload到从缓冲池租用的缓冲区, 返回的缓冲区已经 flip, 使用完后必须调用 {@linkplain #release(ByteBuffer)} 归还.
+     * 没有设置缓冲池时分配一个新的缓冲区
+     * @param payloadDescriptor pd
+     * @param payload payload
+     * @return buffer holding the serialized bytes between its position and limit
+     * @throws SerializeException
+     */
+    public static ByteBuffer serializePooled(PayloadDescriptor payloadDescriptor, Object payload) throws SerializeException {
+        if (payload == null) throw new SerializeException("No payload specified");
+        PayloadCodec<?> codec = codec(payloadDescriptor, payload.getClass());
+        int size = codec.serializedSize(payload);
+        BufferPool pool = bufferPool;
+        ByteBuffer buffer = pool == null ? ByteBuffer.allocate(size) : pool.lease(size);
+        try {
+            codec.serialize(payload, buffer);
+        } catch (SerializeException e) {
+            release(buffer);
+            throw e;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 归还 {@linkplain #serializePooled(PayloadDescriptor, Object)} 返回的缓冲区
+     * @param buffer buffer, may be null
+     */
+    public static void release(ByteBuffer buffer) {
+        BufferPool pool = bufferPool;
+        if (pool != null) pool.release(buffer);
+    }
+
+    /**
+     * 设置某个ID的Payload的监听器, 每次序列化和反序列化后被调用, 用于统计记录数, 字节数, 耗时和错误
+     * @param descriptorId descriptor id
+     * @param listener listener, null to remove it
+     */
+    public static synchronized void setListener(int descriptorId, PayloadListener listener) {
+        Map<Integer, PayloadListener> map = new HashMap<Integer, PayloadListener>(listeners);
+        if (listener == null) {
+            map.remove(descriptorId);
+        } else {
+            map.put(descriptorId, listener);
+        }
+        listeners = map.isEmpty() ? Collections.<Integer, PayloadListener>emptyMap() : map;
+    }
+
+    /**
+     * @param descriptorId descriptor id
+     * @return listener of the id, {@linkplain PayloadListener#NOOP} if none
+     */
+    public static PayloadListener getListener(int descriptorId) {
+        PayloadListener listener = listener(descriptorId);
+        return listener == null ? PayloadListener.NOOP : listener;
+    }
+
+    /**
+     * Return the listener of the id, null if none. Costs a volatile read when no listener is set.
+     */
+    static PayloadListener listener(int descriptorId) {
+        Map<Integer, PayloadListener> map = listeners;
+        return map.isEmpty() ? null : map.get(descriptorId);
+    }
+
+    /**
+     * Count the null flags set in the bitmap at an absolute offset of the buffer
+     */
+    static int nullCount(ByteBuffer buffer, int offset, int nullFlagSize) {
+        int count = 0;
+        for (int i = 0; i < nullFlagSize; i++) {
+            count += Integer.bitCount(buffer.get(offset + i) & 0xFF);
+        }
+        return count;
+    }
+
+    /**
+     * 设置批量序列化和反序列化并行执行的最小数量, 小于该数量时在调用线程中顺序执行
+     * @param threshold number of payloads
+     */
+    public static void setParallelThreshold(int threshold) {
+        if (threshold < 0) throw new IllegalArgumentException("Invalid parallel threshold: " + threshold);
+        parallelThreshold = threshold;
+    }
+
+    public static int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * 批量序列化, 在 {@linkplain ForkJoinPool#commonPool()} 中并行执行
+     * @param payloadDescriptor pd
+     * @param payloads payloads
+     * @return serialized payloads in one array, in the order of the list
+     * @throws SerializeException
+     */
+    public static EncodedPayloads serializeAll(PayloadDescriptor payloadDescriptor, List<?> payloads) throws SerializeException {
+        return serializeAll(payloadDescriptor, payloads, ForkJoinPool.commonPool());
     }
 
+    /**
+     * 批量序列化: 先并行计算每个Payload的大小得到偏移表, 再分配一个数组, 各分段并行写入各自的偏移位置.
+     * 列表需要支持高效的随机访问
+     * @param payloadDescriptor pd
+     * @param payloads payloads
+     * @param pool pool running the work
+     * @return serialized payloads in one array, in the order of the list
+     * @throws SerializeException
+     */
+    public static EncodedPayloads serializeAll(PayloadDescriptor payloadDescriptor, List<?> payloads, ForkJoinPool pool) throws SerializeException {
+        if (payloads == null) throw new SerializeException("No payloads specified");
+        return ParallelPayloads.serializeAll(payloadDescriptor, payloads, pool, parallelThreshold);
+    }
+
+    /**
+     * 批量反序列化, 在 {@linkplain ForkJoinPool#commonPool()} 中并行执行
+     * @param payloadDescriptor pd
+     * @param payloads serialized payloads
+     * @return payloads in order, the list has a fixed size
+     * @throws DeserializeException
+     */
+    public static List<Payload> deserializeAll(PayloadDescriptor payloadDescriptor, EncodedPayloads payloads) throws DeserializeException {
+        return deserializeAll(payloadDescriptor, payloads, ForkJoinPool.commonPool());
+    }
+
+    public static List<Payload> deserializeAll(PayloadDescriptor payloadDescriptor, EncodedPayloads payloads, ForkJoinPool pool) throws DeserializeException {
+        if (payloads == null) throw new DeserializeException("No payloads specified");
+        return ParallelPayloads.deserializeAll(payloadDescriptor, payloads, pool, parallelThreshold);
+    }
+
+    /**
+     * 批量反序列化为指定类型的对象, 在 {@linkplain ForkJoinPool#commonPool()} 中并行执行
+     * @param payloadDescriptor pd
+     * @param payloads serialized payloads
+     * @param payloadClass class with a no-arg constructor
+     * @return payload objects in order, the list has a fixed size
+     * @throws DeserializeException
+     */
+    public static <T> List<T> deserializeAll(PayloadDescriptor payloadDescriptor, EncodedPayloads payloads, Class<T> payloadClass) throws DeserializeException {
+        return deserializeAll(payloadDescriptor, payloads, payloadClass, ForkJoinPool.commonPool());
+    }
+
+    public static <T> List<T> deserializeAll(PayloadDescriptor payloadDescriptor, EncodedPayloads payloads, Class<T> payloadClass, ForkJoinPool pool) throws DeserializeException {
+        if (payloads == null) throw new DeserializeException("No payloads specified");
+        return ParallelPayloads.deserializeAll(payloadDescriptor, payloads, payloadClass, pool, parallelThreshold);
+    }
+
+    /**
+     * 计算序列化后的字节数, 可用于预先分配缓冲区
+     * @param payloadDescriptor pd
+     * @param payload payload
+     * @return exact serialized size
+     * @throws SerializeException
+     */
+    public static int serializedSize(PayloadDescriptor payloadDescriptor, Object payload) throws SerializeException {
+        if (payload == null) throw new SerializeException("No payload specified");
+        return codec(payloadDescriptor, payload.getClass()).serializedSize(payload);
+    }
+
+
     private static boolean isNullFlagSet(byte nullFlagBytes[], int index) {
         int size = index + 1;
         int mod = size % 8;
@@ -85,77 +319,189 @@ public class Payloads {
      * @throws SerializeException
      */
     public static void serialize(PayloadDescriptor payloadDescriptor, Object payload, OutputStream outputStream) throws SerializeException {
-        List<FieldDescriptor> fields = payloadDescriptor.getFieldDescriptors();
-        DataOutputStream out = new DataOutputStream(outputStream);
-
-        try {
-            // 写ID
-            out.writeInt(payloadDescriptor.getId());
-
-            // 获取能表示null字段的字节数组
-            byte nullFlagBytes[] = payloadDescriptor.nullFlagBytes();
-
-            Object values[] = new Object[fields.size()];
-            for (int i = 0; i < fields.size(); i++) {
-                FieldDescriptor fd = fields.get(i);
-                Object value = PropertyUtils.getNestedProperty(payload, fd.getName());
-                byte bytes[] = fd.getType().serialize(value);
-                if (bytes == null) {
-                    setNullBitFlag(nullFlagBytes, i);
-                }
-                values[i] = bytes;
-            }
+        if (payload == null) throw new SerializeException("No payload specified");
+        codec(payloadDescriptor, payload.getClass()).serialize(payload, outputStream);
+    }
 
-            // write null field flags
-            out.write(nullFlagBytes, 0, nullFlagBytes.length);
-            for (int i = 0; i < values.length; i++) {
-                byte[] bytes = (byte[]) values[i];
-                if(bytes != null) {
-                    out.write(bytes, 0, bytes.length);
-                }
-            }
-            out.flush();
-        } catch (SerializeException e) {
-            throw e;
-        }
-        catch (Exception e) {
-            throw new SerializeException(e);
+    /**
+     * Return the codec compiled for the descriptor and payload class. Codecs are cached on the descriptor
+     * and recompiled when its fields change.
+     * @param payloadDescriptor pd
+     * @param payloadClass payload class
+     * @return codec
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> PayloadCodec<T> codec(PayloadDescriptor payloadDescriptor, Class<T> payloadClass) {
+        ConcurrentMap<Class<?>, PayloadCodec<?>> codecs = payloadDescriptor.codecs();
+        PayloadCodec<T> codec = (PayloadCodec<T>) codecs.get(payloadClass);
+        if (codec == null || !codec.isCurrent()) {
+            codec = PayloadCodec.compile(payloadDescriptor, payloadClass);
+            codecs.put(payloadClass, codec);
         }
+        return codec;
     }
 
     public static Payload deserialize(PayloadDescriptor payloadDescriptor, byte [] payload) throws DeserializeException {
-        List<FieldDescriptor> fields = payloadDescriptor.getFieldDescriptors();
+        return deserialize(payloadDescriptor, ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * 从缓冲区当前位置反序列化一个Payload. 数值字段不装箱, 通过 Payload 的 primitive getter 读取
+     * @param payloadDescriptor pd
+     * @param buffer big-endian buffer positioned at the payload
+     * @return payload
+     * @throws DeserializeException
+     */
+    public static Payload deserialize(PayloadDescriptor payloadDescriptor, ByteBuffer buffer) throws DeserializeException {
+        PayloadListener listener = listener(payloadDescriptor.getId());
+        if (listener == null) return read(payloadDescriptor, buffer);
+        long start = System.nanoTime();
+        int position = buffer.position();
+        Payload payload;
         try {
-            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            payload = read(payloadDescriptor, buffer);
+        } catch (DeserializeException e) {
+            listener.failed(payloadDescriptor, false, e);
+            throw e;
+        }
+        long nanos = System.nanoTime() - start;
+        int nulls = nullCount(buffer, position + 4, payloadDescriptor.layout().nullFlagSize);
+        listener.deserialized(payloadDescriptor, buffer.position() - position, nulls, nanos);
+        return payload;
+    }
 
+    private static Payload read(PayloadDescriptor payloadDescriptor, ByteBuffer buffer) throws DeserializeException {
+        PayloadLayout layout = payloadDescriptor.layout();
+        FieldType types[] = layout.types;
+        try {
             // 读ID
             int id = buffer.getInt();
-            Payload pl = new Payload(id);
 
             // Read null flags
-            byte nullFlagBytes[] = payloadDescriptor.nullFlagBytes();
+            byte nullFlagBytes[] = new byte[layout.nullFlagSize];
             buffer.get(nullFlagBytes);
 
-            int fieldSize = fields.size();
-            for (int i = 0; i < fieldSize; i++) {
-                FieldDescriptor fd = fields.get(i);
-                FieldType type = fd.getType();
-
+            byte codes[] = layout.codes;
+            long values[] = new long[types.length];
+            Object objects[] = null;
+            for (int i = 0; i < types.length; i++) {
                 // judge is null
-                if (!isNullFlagSet(nullFlagBytes, i)) {
-                    Object value = type.deserialize(buffer);
-                    if (type.isUnsigned()) {
-                        pl.addDataField(new UnsignedFieldValue(fd, value));
-                    } else {
-                        pl.addDataField(new FieldValue(fd, value));
-                    }
-                } else {
-                    pl.addDataField(new FieldValue(fd, null));
+                if (isNullFlagSet(nullFlagBytes, i)) continue;
+                switch (codes[i]) {
+                    case PayloadLayout.CODE_INTEGRAL:
+                        values[i] = types[i].readLong(buffer);
+                        break;
+                    case PayloadLayout.CODE_FLOATING:
+                        values[i] = Double.doubleToRawLongBits(types[i].readDouble(buffer));
+                        break;
+                    case PayloadLayout.CODE_BOOL:
+                        values[i] = buffer.get() > 0 ? 1 : 0;
+                        break;
+                    default:
+                        if (objects == null) objects = new Object[types.length];
+                        objects[i] = types[i].deserialize(buffer);
+                        break;
                 }
             }
-            return pl;
+            return new Payload(id, layout, values, objects, nullFlagBytes);
         } catch (Exception e) {
             throw new DeserializeException(e);
         }
     }
+
+    /**
+     * 只反序列化指定的字段, 其他字段按固定长度或长度前缀跳过. 需要重复使用时用 {@linkplain Projection#compile(PayloadDescriptor, String...)}
+     * 预先编译
+     * @param payloadDescriptor pd
+     * @param payload serialized bytes
+     * @param fieldNames names of the fields to decode
+     * @return payload holding only the requested fields
+     * @throws DeserializeException
+     */
+    public static Payload deserialize(PayloadDescriptor payloadDescriptor, byte [] payload, String... fieldNames) throws DeserializeException {
+        return deserialize(payloadDescriptor, ByteBuffer.wrap(payload), fieldNames);
+    }
+
+    public static Payload deserialize(PayloadDescriptor payloadDescriptor, ByteBuffer buffer, String... fieldNames) throws DeserializeException {
+        Projection projection;
+        try {
+            projection = Projection.compile(payloadDescriptor, fieldNames);
+        } catch (IllegalArgumentException e) {
+            throw new DeserializeException(e.getMessage(), e);
+        }
+        return projection.decode(buffer);
+    }
+
+    /**
+     * 把用 writer 版本序列化的数据按 reader 版本反序列化, 见 {@linkplain VersionMapping}. 需要重复使用时用
+     * {@linkplain VersionedReader} 或 {@linkplain VersionMapping#compile(PayloadDescriptor, PayloadDescriptor)} 预先编译
+     * @param writer descriptor the payload was written with
+     * @param reader descriptor to read it as
+     * @param payload serialized bytes
+     * @return payload of the reader descriptor
+     * @throws DeserializeException
+     */
+    public static Payload deserialize(PayloadDescriptor writer, PayloadDescriptor reader, byte [] payload) throws DeserializeException {
+        return deserialize(writer, reader, ByteBuffer.wrap(payload));
+    }
+
+    public static Payload deserialize(PayloadDescriptor writer, PayloadDescriptor reader, ByteBuffer buffer) throws DeserializeException {
+        VersionMapping mapping;
+        try {
+            mapping = VersionMapping.compile(writer, reader);
+        } catch (IllegalArgumentException e) {
+            throw new DeserializeException(e.getMessage(), e);
+        }
+        return mapping.decode(buffer);
+    }
+
+    /**
+     * 反序列化为指定类型的对象, 字段值通过编译好的 setter 直接写入新建的对象
+     * @param payloadDescriptor pd
+     * @param payload serialized bytes
+     * @param payloadClass class with a no-arg constructor
+     * @return payload object
+     * @throws DeserializeException
+     */
+    public static <T> T deserialize(PayloadDescriptor payloadDescriptor, byte [] payload, Class<T> payloadClass) throws DeserializeException {
+        return codec(payloadDescriptor, payloadClass).deserialize(ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * 从缓冲区当前位置反序列化为指定类型的对象
+     * @param payloadDescriptor pd
+     * @param buffer buffer positioned at the payload
+     * @param payloadClass class with a no-arg constructor
+     * @return payload object
+     * @throws DeserializeException
+     */
+    public static <T> T deserialize(PayloadDescriptor payloadDescriptor, ByteBuffer buffer, Class<T> payloadClass) throws DeserializeException {
+        return codec(payloadDescriptor, payloadClass).deserialize(buffer);
+    }
+
+    /**
+     * 反序列化到已有的对象
+     * @param payloadDescriptor pd
+     * @param payload serialized bytes
+     * @param target target object
+     * @return the target object
+     * @throws DeserializeException
+     */
+    public static <T> T into(PayloadDescriptor payloadDescriptor, byte [] payload, T target) throws DeserializeException {
+        return into(payloadDescriptor, ByteBuffer.wrap(payload), target);
+    }
+
+    /**
+     * 从缓冲区当前位置反序列化到已有的对象
+     * @param payloadDescriptor pd
+     * @param buffer buffer positioned at the payload
+     * @param target target object
+     * @return the target object
+     * @throws DeserializeException
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T into(PayloadDescriptor payloadDescriptor, ByteBuffer buffer, T target) throws DeserializeException {
+        if (target == null) throw new DeserializeException("No target specified");
+        return codec(payloadDescriptor, (Class<T>) target.getClass()).deserialize(buffer, target);
+    }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.payload;
+
+import org.mayanjun.pss.DeserializeException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decoder of a subset of the fields of a descriptor. The requested fields are decoded and the others are skipped
+ * by their fixed size or their length prefix, without reading their value.
+ * The result is a {@linkplain Payload} holding only the requested fields, in the requested order.
+ * <p>A projection is compiled once for a descriptor and is thread safe.</p>
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public final class Projection {
+
+    private final PayloadDescriptor descriptor;
+
+    /**
+     * Layout of the descriptor when the projection was compiled
+     */
+    private final PayloadLayout source;
+
+    /**
+     * Layout of the requested fields
+     */
+    private final PayloadLayout layout;
+
+    /**
+     * Index in the result of each field of the source, -1 for the skipped ones
+     */
+    private final int targets[];
+
+    private Projection(PayloadDescriptor descriptor, PayloadLayout source, PayloadLayout layout, int targets[]) {
+        this.descriptor = descriptor;
+        this.source = source;
+        this.layout = layout;
+        this.targets = targets;
+    }
+
+    /**
+     * Compile a projection
+     * @param descriptor pd
+     * @param fieldNames names of the fields to decode
+     * @return projection
+     * @throws IllegalArgumentException if a field doesn't exist or is requested twice
+     */
+    public static Projection compile(PayloadDescriptor descriptor, String... fieldNames) {
+        PayloadLayout source = descriptor.layout();
+        int targets[] = new int[source.fields.length];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = -1;
+        }
+        List<FieldDescriptor> fields = new ArrayList<FieldDescriptor>(fieldNames.length);
+        for (String name : fieldNames) {
+            int index = source.indexOf(name);
+            if (index < 0) throw new IllegalArgumentException("No such field: " + name);
+            if (targets[index] >= 0) throw new IllegalArgumentException("Duplicate field: " + name);
+            targets[index] = fields.size();
+            fields.add(source.fields[index]);
+        }
+        return new Projection(descriptor, source, new PayloadLayout(fields), targets);
+    }
+
+    public PayloadDescriptor getDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * @return layout of the requested fields
+     */
+    public PayloadLayout getLayout() {
+        return layout;
+    }
+
+    public Payload decode(byte payload[]) throws DeserializeException {
+        return decode(ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * Decode the requested fields of the payload at the current position of the buffer. On success the position
+     * is moved to the end of the payload, as {@linkplain Payloads#deserialize(PayloadDescriptor, ByteBuffer)} does.
+     * @param buffer buffer positioned at the payload
+     * @return payload holding the requested fields
+     * @throws DeserializeException
+     */
+    public Payload decode(ByteBuffer buffer) throws DeserializeException {
+        if (descriptor.layout() != source) {
+            throw new DeserializeException("Descriptor " + descriptor.getId() + " changed since the projection was compiled");
+        }
+        FieldType types[] = source.types;
+        byte codes[] = source.codes;
+        int start = buffer.position();
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        try {
+            int id = buffer.getInt();
+            int flagsPosition = buffer.position();
+            buffer.position(flagsPosition + source.nullFlagSize);
+
+            long values[] = new long[layout.fields.length];
+            Object objects[] = null;
+            byte nullFlags[] = new byte[layout.nullFlagSize];
+            for (int i = 0; i < types.length; i++) {
+                int target = targets[i];
+                if ((buffer.get(flagsPosition + (i >>> 3)) & (1 << (i & 7))) != 0) {
+                    if (target >= 0) nullFlags[target >>> 3] |= 1 << (target & 7);
+                    continue;
+                }
+                if (target < 0) {
+                    int position = buffer.position();
+                    buffer.position(position + types[i].encodedLength(buffer, position));
+                    continue;
+                }
+                switch (codes[i]) {
+                    case PayloadLayout.CODE_INTEGRAL:
+                        values[target] = types[i].readLong(buffer);
+                        break;
+                    case PayloadLayout.CODE_FLOATING:
+                        values[target] = Double.doubleToRawLongBits(types[i].readDouble(buffer));
+                        break;
+                    case PayloadLayout.CODE_BOOL:
+                        values[target] = buffer.get() > 0 ? 1 : 0;
+                        break;
+                    default:
+                        if (objects == null) objects = new Object[layout.fields.length];
+                        objects[target] = types[i].deserialize(buffer);
+                        break;
+                }
+            }
+            return new Payload(id, layout, values, objects, nullFlags);
+        } catch (Exception e) {
+            buffer.position(start);
+            throw new DeserializeException(e);
+        } finally {
+            buffer.order(order);
+        }
+    }
+}
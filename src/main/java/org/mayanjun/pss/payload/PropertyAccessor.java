@@ -0,0 +1,295 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.payload;
+
+import org.apache.commons.beanutils.DynaBean;
+import org.apache.commons.beanutils.PropertyUtils;
+
+import java.beans.BeanInfo;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * Accessor of a (nested) bean property, compiled once for a bean class.
+ * Simple bean paths such as <code>a.b.c</code> are resolved to a chain of getter method handles;
+ * maps, dyna beans, indexed/mapped expressions and properties that can't be resolved statically
+ * fall back to {@linkplain PropertyUtils#getNestedProperty(Object, String)}.
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+abstract class PropertyAccessor {
+
+    static final int KIND_OBJECT = 0;
+    static final int KIND_LONG = 1;
+    static final int KIND_DOUBLE = 2;
+    static final int KIND_BOOLEAN = 3;
+
+    private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType LONG_GETTER = MethodType.methodType(long.class, Object.class);
+    private static final MethodType DOUBLE_GETTER = MethodType.methodType(double.class, Object.class);
+    private static final MethodType BOOLEAN_GETTER = MethodType.methodType(boolean.class, Object.class);
+
+    private final String path;
+
+    PropertyAccessor(String path) {
+        this.path = path;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Read the property value of the bean
+     * @param bean bean
+     * @return property value
+     * @throws Exception if the property can't be read
+     */
+    abstract Object get(Object bean) throws Exception;
+
+    /**
+     * Return the kind of the property value. Properties of primitive kinds are never null and
+     * can be read without boxing by {@linkplain #getLong(Object)}, {@linkplain #getDouble(Object)}
+     * or {@linkplain #getBoolean(Object)}
+     * @return one of the KIND_* constants
+     */
+    int kind() {
+        return KIND_OBJECT;
+    }
+
+    /**
+     * Read an integral primitive property (byte, short, int or long)
+     */
+    long getLong(Object bean) throws Exception {
+        throw new UnsupportedOperationException("Not an integral property: " + path);
+    }
+
+    /**
+     * Read a floating point primitive property (float or double)
+     */
+    double getDouble(Object bean) throws Exception {
+        throw new UnsupportedOperationException("Not a floating point property: " + path);
+    }
+
+    /**
+     * Read a boolean primitive property
+     */
+    boolean getBoolean(Object bean) throws Exception {
+        throw new UnsupportedOperationException("Not a boolean property: " + path);
+    }
+
+    static PropertyAccessor compile(Class<?> beanClass, String path) {
+        if (beanClass == null || path.indexOf('[') >= 0 || path.indexOf('(') >= 0) {
+            return new NestedPropertyAccessor(path);
+        }
+        if (Map.class.isAssignableFrom(beanClass)) {
+            if (path.indexOf('.') < 0) return new MapEntryAccessor(path);
+            return new NestedPropertyAccessor(path);
+        }
+        if (DynaBean.class.isAssignableFrom(beanClass)) {
+            return new NestedPropertyAccessor(path);
+        }
+
+        try {
+            MethodHandle handle = null;
+            Class<?> owner = beanClass;
+            for (String name : path.split("\\.")) {
+                if (owner.isPrimitive() || owner == Object.class
+                        || Map.class.isAssignableFrom(owner) || DynaBean.class.isAssignableFrom(owner)) {
+                    return new NestedPropertyAccessor(path);
+                }
+                Method getter = findGetter(owner, name);
+                if (getter == null) return new NestedPropertyAccessor(path);
+                getter.setAccessible(true);
+                MethodHandle mh = MethodHandles.lookup().unreflect(getter);
+                handle = handle == null ? mh : MethodHandles.filterReturnValue(handle, mh);
+                owner = getter.getReturnType();
+            }
+            if (owner == long.class || owner == int.class || owner == short.class || owner == byte.class) {
+                return new LongAccessor(path, handle.asType(OBJECT_GETTER), handle.asType(LONG_GETTER));
+            } else if (owner == double.class || owner == float.class) {
+                return new DoubleAccessor(path, handle.asType(OBJECT_GETTER), handle.asType(DOUBLE_GETTER));
+            } else if (owner == boolean.class) {
+                return new BooleanAccessor(path, handle.asType(OBJECT_GETTER), handle.asType(BOOLEAN_GETTER));
+            }
+            return new MethodHandleAccessor(path, handle.asType(OBJECT_GETTER));
+        } catch (Exception e) {
+            return new NestedPropertyAccessor(path);
+        }
+    }
+
+    private static Method findGetter(Class<?> owner, String name) throws Exception {
+        BeanInfo info = Introspector.getBeanInfo(owner);
+        for (PropertyDescriptor pd : info.getPropertyDescriptors()) {
+            if (name.equals(pd.getName())) {
+                return pd.getReadMethod();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Getter chain invoked through a method handle
+     */
+    private static class MethodHandleAccessor extends PropertyAccessor {
+
+        private final MethodHandle getter;
+
+        MethodHandleAccessor(String path, MethodHandle getter) {
+            super(path);
+            this.getter = getter;
+        }
+
+        @Override
+        Object get(Object bean) throws Exception {
+            try {
+                return getter.invokeExact(bean);
+            } catch (Exception e) {
+                throw e;
+            } catch (Throwable e) {
+                throw unexpected(e);
+            }
+        }
+
+        final IllegalStateException unexpected(Throwable e) {
+            return new IllegalStateException("Can't read property: " + getPath(), e);
+        }
+    }
+
+    /**
+     * Getter chain ending with a byte, short, int or long property
+     */
+    private static final class LongAccessor extends MethodHandleAccessor {
+
+        private final MethodHandle primitiveGetter;
+
+        LongAccessor(String path, MethodHandle getter, MethodHandle primitiveGetter) {
+            super(path, getter);
+            this.primitiveGetter = primitiveGetter;
+        }
+
+        @Override
+        int kind() {
+            return KIND_LONG;
+        }
+
+        @Override
+        long getLong(Object bean) throws Exception {
+            try {
+                return (long) primitiveGetter.invokeExact(bean);
+            } catch (Exception e) {
+                throw e;
+            } catch (Throwable e) {
+                throw unexpected(e);
+            }
+        }
+    }
+
+    /**
+     * Getter chain ending with a float or double property
+     */
+    private static final class DoubleAccessor extends MethodHandleAccessor {
+
+        private final MethodHandle primitiveGetter;
+
+        DoubleAccessor(String path, MethodHandle getter, MethodHandle primitiveGetter) {
+            super(path, getter);
+            this.primitiveGetter = primitiveGetter;
+        }
+
+        @Override
+        int kind() {
+            return KIND_DOUBLE;
+        }
+
+        @Override
+        double getDouble(Object bean) throws Exception {
+            try {
+                return (double) primitiveGetter.invokeExact(bean);
+            } catch (Exception e) {
+                throw e;
+            } catch (Throwable e) {
+                throw unexpected(e);
+            }
+        }
+    }
+
+    /**
+     * Getter chain ending with a boolean property
+     */
+    private static final class BooleanAccessor extends MethodHandleAccessor {
+
+        private final MethodHandle primitiveGetter;
+
+        BooleanAccessor(String path, MethodHandle getter, MethodHandle primitiveGetter) {
+            super(path, getter);
+            this.primitiveGetter = primitiveGetter;
+        }
+
+        @Override
+        int kind() {
+            return KIND_BOOLEAN;
+        }
+
+        @Override
+        boolean getBoolean(Object bean) throws Exception {
+            try {
+                return (boolean) primitiveGetter.invokeExact(bean);
+            } catch (Exception e) {
+                throw e;
+            } catch (Throwable e) {
+                throw unexpected(e);
+            }
+        }
+    }
+
+    /**
+     * Entry of a {@linkplain Map} payload
+     */
+    private static final class MapEntryAccessor extends PropertyAccessor {
+
+        MapEntryAccessor(String path) {
+            super(path);
+        }
+
+        @Override
+        Object get(Object bean) throws Exception {
+            if (bean instanceof Map) return ((Map<?, ?>) bean).get(getPath());
+            return PropertyUtils.getNestedProperty(bean, getPath());
+        }
+    }
+
+    /**
+     * Fallback to commons-beanutils
+     */
+    private static final class NestedPropertyAccessor extends PropertyAccessor {
+
+        NestedPropertyAccessor(String path) {
+            super(path);
+        }
+
+        @Override
+        Object get(Object bean) throws Exception {
+            return PropertyUtils.getNestedProperty(bean, getPath());
+        }
+    }
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.payload;
+
+import org.apache.commons.beanutils.DynaBean;
+import org.apache.commons.beanutils.PropertyUtils;
+
+import java.beans.BeanInfo;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * Binder of a (nested) bean property, compiled once for a bean class. It is the write side of
+ * {@linkplain PropertyAccessor}: simple bean paths are resolved to setter method handles, primitive
+ * properties can be set without boxing and missing intermediate beans of nested paths are created
+ * with their no-arg constructor. Anything else falls back to {@linkplain PropertyUtils#setNestedProperty(Object, String, Object)}.
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+abstract class PropertyBinder {
+
+    private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType OBJECT_SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final String path;
+
+    PropertyBinder(String path) {
+        this.path = path;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Return the declared type of the property, {@linkplain Object} if it is unknown
+     * @return property type
+     */
+    Class<?> getType() {
+        return Object.class;
+    }
+
+    /**
+     * Set the property value of the bean
+     * @param bean bean
+     * @param value value, must be assignable to {@linkplain #getType()}
+     * @throws Exception if the property can't be written
+     */
+    abstract void set(Object bean, Object value) throws Exception;
+
+    void setByte(Object bean, byte value) throws Exception {
+        set(bean, value);
+    }
+
+    void setShort(Object bean, short value) throws Exception {
+        set(bean, value);
+    }
+
+    void setInt(Object bean, int value) throws Exception {
+        set(bean, value);
+    }
+
+    void setLong(Object bean, long value) throws Exception {
+        set(bean, value);
+    }
+
+    void setFloat(Object bean, float value) throws Exception {
+        set(bean, value);
+    }
+
+    void setDouble(Object bean, double value) throws Exception {
+        set(bean, value);
+    }
+
+    void setBoolean(Object bean, boolean value) throws Exception {
+        set(bean, value);
+    }
+
+    static PropertyBinder compile(Class<?> beanClass, String path) {
+        if (beanClass == null || path.indexOf('[') >= 0 || path.indexOf('(') >= 0) {
+            return new NestedPropertyBinder(path);
+        }
+        if (Map.class.isAssignableFrom(beanClass)) {
+            if (path.indexOf('.') < 0) return new MapEntryBinder(path);
+            return new NestedPropertyBinder(path);
+        }
+
+        try {
+            String names[] = path.split("\\.");
+            ParentStep steps[] = new ParentStep[names.length - 1];
+            Class<?> owner = beanClass;
+            for (int i = 0; i < names.length; i++) {
+                if (owner.isPrimitive() || owner == Object.class
+                        || Map.class.isAssignableFrom(owner) || DynaBean.class.isAssignableFrom(owner)) {
+                    return new NestedPropertyBinder(path);
+                }
+                PropertyDescriptor pd = findProperty(owner, names[i]);
+                if (pd == null || pd.getWriteMethod() == null) return new NestedPropertyBinder(path);
+                if (i == names.length - 1) {
+                    return new MethodHandleBinder(path, steps, pd.getPropertyType(), unreflect(pd.getWriteMethod()));
+                }
+                if (pd.getReadMethod() == null) return new NestedPropertyBinder(path);
+                steps[i] = new ParentStep(pd.getPropertyType(),
+                        unreflect(pd.getReadMethod()).asType(OBJECT_GETTER),
+                        unreflect(pd.getWriteMethod()).asType(OBJECT_SETTER));
+                owner = pd.getPropertyType();
+            }
+        } catch (Exception e) {
+            // fall through
+        }
+        return new NestedPropertyBinder(path);
+    }
+
+    private static MethodHandle unreflect(Method method) throws IllegalAccessException {
+        method.setAccessible(true);
+        return MethodHandles.lookup().unreflect(method);
+    }
+
+    private static PropertyDescriptor findProperty(Class<?> owner, String name) throws Exception {
+        BeanInfo info = Introspector.getBeanInfo(owner);
+        for (PropertyDescriptor pd : info.getPropertyDescriptors()) {
+            if (name.equals(pd.getName())) {
+                return pd;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * An intermediate bean of a nested path, created on demand
+     */
+    private static final class ParentStep {
+
+        private final Class<?> type;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private volatile Constructor<?> constructor;
+
+        ParentStep(Class<?> type, MethodHandle getter, MethodHandle setter) {
+            this.type = type;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        Object resolve(Object bean) throws Throwable {
+            Object value = getter.invokeExact(bean);
+            if (value == null) {
+                Constructor<?> ctor = constructor;
+                if (ctor == null) {
+                    ctor = type.getDeclaredConstructor();
+                    ctor.setAccessible(true);
+                    constructor = ctor;
+                }
+                value = ctor.newInstance();
+                setter.invokeExact(bean, value);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Setter invoked through a method handle
+     */
+    private static final class MethodHandleBinder extends PropertyBinder {
+
+        private final ParentStep steps[];
+        private final Class<?> type;
+        private final MethodHandle setter;
+        private final MethodHandle objectSetter;
+
+        MethodHandleBinder(String path, ParentStep steps[], Class<?> type, MethodHandle setter) {
+            super(path);
+            this.steps = steps;
+            this.type = type;
+            this.setter = setter.asType(MethodType.methodType(void.class, Object.class, type));
+            this.objectSetter = setter.asType(OBJECT_SETTER);
+        }
+
+        @Override
+        Class<?> getType() {
+            return type;
+        }
+
+        private Object owner(Object bean) throws Throwable {
+            for (int i = 0; i < steps.length; i++) {
+                bean = steps[i].resolve(bean);
+            }
+            return bean;
+        }
+
+        @Override
+        void set(Object bean, Object value) throws Exception {
+            try {
+                objectSetter.invokeExact(owner(bean), value);
+            } catch (Exception e) {
+                throw e;
+            } catch (Throwable e) {
+                throw unexpected(e);
+            }
+        }
+
+        @Override
+        void setByte(Object bean, byte value) throws Exception {
+            if (type != byte.class) {
+                super.setByte(bean, value);
+                return;
+            }
+            try {
+                setter.invokeExact(owner(bean), value);
+            } catch (Exception e) {
+                throw e;
+            } catch (Throwable e) {
+                throw unexpected(e);
+            }
+        }
+
+        @Override
+        void setShort(Object bean, short value) throws Exception {
+            if (type != short.class) {
+                super.setShort(bean, value);
+                return;
+            }
+            try {
+                setter.invokeExact(owner(bean), value);
+            } catch (Exception e) {
+                throw e;
+            } catch (Throwable e) {
+                throw unexpected(e);
+            }
+        }
+
+        @Override
+        void setInt(Object bean, int value) throws Exception {
+            if (type != int.class) {
+                super.setInt(bean, value);
+                return;
+            }
+            try {
+                setter.invokeExact(owner(bean), value);
+            } catch (Exception e) {
+                throw e;
+            } catch (Throwable e) {
+                throw unexpected(e);
+            }
+        }
+
+        @Override
+        void setLong(Object bean, long value) throws Exception {
+            if (type != long.class) {
+                super.setLong(bean, value);
+                return;
+            }
+            try {
+                setter.invokeExact(owner(bean), value);
+            } catch (Exception e) {
+                throw e;
+            } catch (Throwable e) {
+                throw unexpected(e);
+            }
+        }
+
+        @Override
+        void setFloat(Object bean, float value) throws Exception {
+            if (type != float.class) {
+                super.setFloat(bean, value);
+                return;
+            }
+            try {
+                setter.invokeExact(owner(bean), value);
+            } catch (Exception e) {
+                throw e;
+            } catch (Throwable e) {
+                throw unexpected(e);
+            }
+        }
+
+        @Override
+        void setDouble(Object bean, double value) throws Exception {
+            if (type != double.class) {
+                super.setDouble(bean, value);
+                return;
+            }
+            try {
+                setter.invokeExact(owner(bean), value);
+            } catch (Exception e) {
+                throw e;
+            } catch (Throwable e) {
+                throw unexpected(e);
+            }
+        }
+
+        @Override
+        void setBoolean(Object bean, boolean value) throws Exception {
+            if (type != boolean.class) {
+                super.setBoolean(bean, value);
+                return;
+            }
+            try {
+                setter.invokeExact(owner(bean), value);
+            } catch (Exception e) {
+                throw e;
+            } catch (Throwable e) {
+                throw unexpected(e);
+            }
+        }
+
+        private IllegalStateException unexpected(Throwable e) {
+            return new IllegalStateException("Can't write property: " + getPath(), e);
+        }
+    }
+
+    /**
+     * Entry of a {@linkplain Map} bean
+     */
+    private static final class MapEntryBinder extends PropertyBinder {
+
+        MapEntryBinder(String path) {
+            super(path);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void set(Object bean, Object value) throws Exception {
+            if (bean instanceof Map) {
+                ((Map<String, Object>) bean).put(getPath(), value);
+            } else {
+                PropertyUtils.setNestedProperty(bean, getPath(), value);
+            }
+        }
+    }
+
+    /**
+     * Fallback to commons-beanutils
+     */
+    private static final class NestedPropertyBinder extends PropertyBinder {
+
+        NestedPropertyBinder(String path) {
+            super(path);
+        }
+
+        @Override
+        void set(Object bean, Object value) throws Exception {
+            PropertyUtils.setNestedProperty(bean, getPath(), value);
+        }
+    }
+}
@@ -30,4 +30,12 @@ public class UnsignedFieldValue extends FieldValue {
     public Object getUnsignedValue() {
         return getFieldDescriptor().getType().unsignedValue(getValue());
     }
+
+    /**
+     * Return the unsigned value without boxing
+     * @return unsigned value
+     */
+    public long getUnsignedLong() {
+        return getFieldDescriptor().getType().unsignedLong(((Number) getValue()).longValue());
+    }
 }
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.payload;
+
+import org.mayanjun.pss.DeserializeException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Date;
+
+/**
+ * Plan reading the payloads written with one version of a type as another version of it. Fields are matched
+ * by name when the plan is compiled: fields the reader doesn't have are skipped, fields the writer doesn't have
+ * get their {@linkplain FieldDescriptor#getDefaultValue() default value}, and values of a field whose type
+ * changed are widened. Allowed changes are
+ * <ul>
+ *     <li>an integral type to an integral type holding all its values, e.g. INT16 to INT32, UINT32 to INT64
+ *     or INT32 to VARINT32 (DATE only maps to DATE)</li>
+ *     <li>an integral type to FLOAT or DOUBLE, FLOAT to DOUBLE</li>
+ *     <li>STRING to BYTES and BYTES to STRING</li>
+ * </ul>
+ * Decoding applies the plan field by field without comparing the schemas again and returns a
+ * {@linkplain Payload} of the reader descriptor.
+ * <p>A mapping is thread safe.</p>
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public final class VersionMapping {
+
+    private static final byte OP_SKIP = 0;
+    private static final byte OP_LONG = 1;
+    private static final byte OP_WIDEN = 2;
+    private static final byte OP_TO_FLOAT = 3;
+    private static final byte OP_TO_DOUBLE = 4;
+    private static final byte OP_FLOATING = 5;
+    private static final byte OP_BOOL = 6;
+    private static final byte OP_OBJECT = 7;
+
+    private final PayloadDescriptor writer;
+
+    private final PayloadDescriptor reader;
+
+    /**
+     * Layouts of the descriptors when the mapping was compiled
+     */
+    private final PayloadLayout source;
+
+    private final PayloadLayout target;
+
+    /**
+     * Operation of each writer field
+     */
+    private final byte ops[];
+
+    /**
+     * Reader index of each writer field, -1 for the skipped ones
+     */
+    private final int targets[];
+
+    /**
+     * Values, objects and null flags of a payload before the writer fields are read: the default values of the
+     * fields added by the reader
+     */
+    private final long defaults[];
+
+    private final Object defaultObjects[];
+
+    private final byte defaultNullFlags[];
+
+    private VersionMapping(PayloadDescriptor writer, PayloadDescriptor reader, PayloadLayout source,
+                           PayloadLayout target, byte ops[], int targets[], long defaults[],
+                           Object defaultObjects[], byte defaultNullFlags[]) {
+        this.writer = writer;
+        this.reader = reader;
+        this.source = source;
+        this.target = target;
+        this.ops = ops;
+        this.targets = targets;
+        this.defaults = defaults;
+        this.defaultObjects = defaultObjects;
+        this.defaultNullFlags = defaultNullFlags;
+    }
+
+    /**
+     * Compile the plan reading the payloads of the writer descriptor as payloads of the reader descriptor
+     * @param writer descriptor the payloads were written with
+     * @param reader descriptor to read them as
+     * @return mapping
+     * @throws IllegalArgumentException if the descriptors have different type ids, a field type can't be widened
+     * or a default value doesn't match the type of its field
+     */
+    public static VersionMapping compile(PayloadDescriptor writer, PayloadDescriptor reader) {
+        if (writer.getTypeId() != reader.getTypeId()) {
+            throw new IllegalArgumentException("Payload type mismatch: " + writer.getTypeId() + " <> " + reader.getTypeId());
+        }
+        PayloadLayout source = writer.layout();
+        PayloadLayout target = reader.layout();
+        byte ops[] = new byte[source.fields.length];
+        int targets[] = new int[source.fields.length];
+        boolean mapped[] = new boolean[target.fields.length];
+        for (int i = 0; i < ops.length; i++) {
+            String name = source.fields[i].getName();
+            int index = target.indexOf(name);
+            targets[i] = index;
+            if (index < 0) continue;
+            ops[i] = operation(source.types[i], target.types[index]);
+            if (ops[i] == OP_SKIP) {
+                throw new IllegalArgumentException("Can't read field " + name + " of type " + source.types[i] + " as "
+                        + target.types[index]);
+            }
+            mapped[index] = true;
+        }
+
+        long defaults[] = new long[target.fields.length];
+        Object defaultObjects[] = null;
+        byte defaultNullFlags[] = new byte[target.nullFlagSize];
+        for (int i = 0; i < mapped.length; i++) {
+            if (mapped[i]) continue;
+            FieldDescriptor field = target.fields[i];
+            Object value = field.getDefaultValue();
+            if (value == null) {
+                defaultNullFlags[i >>> 3] |= 1 << (i & 7);
+                continue;
+            }
+            FieldType type = target.types[i];
+            boolean valid = false;
+            switch (target.codes[i]) {
+                case PayloadLayout.CODE_INTEGRAL:
+                    if (type == FieldType.DATE ? value instanceof Date : value instanceof Number) {
+                        defaults[i] = narrow(type, value instanceof Date ? ((Date) value).getTime() : ((Number) value).longValue());
+                        valid = true;
+                    }
+                    break;
+                case PayloadLayout.CODE_FLOATING:
+                    if (value instanceof Number) {
+                        double d = ((Number) value).doubleValue();
+                        defaults[i] = Double.doubleToRawLongBits(type == FieldType.FLOAT ? (float) d : d);
+                        valid = true;
+                    }
+                    break;
+                case PayloadLayout.CODE_BOOL:
+                    if (value instanceof Boolean) {
+                        defaults[i] = (Boolean) value ? 1 : 0;
+                        valid = true;
+                    }
+                    break;
+                default:
+                    if (type == FieldType.STRING ? value instanceof String : value instanceof byte[]) {
+                        if (defaultObjects == null) defaultObjects = new Object[target.fields.length];
+                        defaultObjects[i] = value;
+                        valid = true;
+                    }
+                    break;
+            }
+            if (!valid) {
+                throw new IllegalArgumentException("Default value of field " + field.getName() + " is not a " + type
+                        + ": " + value.getClass().getName());
+            }
+        }
+        return new VersionMapping(writer, reader, source, target, ops, targets, defaults, defaultObjects, defaultNullFlags);
+    }
+
+    private static byte operation(FieldType from, FieldType to) {
+        if (from == to) {
+            switch (PayloadLayout.codeOf(from)) {
+                case PayloadLayout.CODE_INTEGRAL:
+                    return OP_LONG;
+                case PayloadLayout.CODE_FLOATING:
+                    return OP_FLOATING;
+                case PayloadLayout.CODE_BOOL:
+                    return OP_BOOL;
+                default:
+                    return OP_OBJECT;
+            }
+        }
+        if (from.isIntegral() && from != FieldType.DATE) {
+            if (to == FieldType.FLOAT) return OP_TO_FLOAT;
+            if (to == FieldType.DOUBLE) return OP_TO_DOUBLE;
+            if (!to.isIntegral() || to == FieldType.DATE) return OP_SKIP;
+            if (from.isUnsigned()) {
+                return (to.isUnsigned() ? bits(to) >= bits(from) : bits(to) > bits(from)) ? OP_WIDEN : OP_SKIP;
+            }
+            return !to.isUnsigned() && bits(to) >= bits(from) ? OP_WIDEN : OP_SKIP;
+        }
+        if (from == FieldType.FLOAT && to == FieldType.DOUBLE) return OP_FLOATING;
+        if ((from == FieldType.STRING && to == FieldType.BYTES) || (from == FieldType.BYTES && to == FieldType.STRING)) {
+            return OP_OBJECT;
+        }
+        return OP_SKIP;
+    }
+
+    private static int bits(FieldType type) {
+        switch (type) {
+            case INT8:
+            case UINT8:
+                return 8;
+            case INT16:
+            case UINT16:
+                return 16;
+            case INT32:
+            case UINT32:
+            case VARINT32:
+            case UVARINT32:
+            case ZIGZAG32:
+                return 32;
+            default:
+                return 64;
+        }
+    }
+
+    /**
+     * Convert a value to the signed form a payload keeps for the type
+     */
+    private static long narrow(FieldType type, long value) {
+        switch (bits(type)) {
+            case 8:
+                return (byte) value;
+            case 16:
+                return (short) value;
+            case 32:
+                return (int) value;
+            default:
+                return value;
+        }
+    }
+
+    private static double toDouble(FieldType type, long value) {
+        if (type == FieldType.UVARINT64 && value < 0) return ((value >>> 1) | (value & 1)) * 2.0;
+        return type.unsignedLong(value);
+    }
+
+    public PayloadDescriptor getWriter() {
+        return writer;
+    }
+
+    public PayloadDescriptor getReader() {
+        return reader;
+    }
+
+    /**
+     * @return true if the descriptors haven't changed since the mapping was compiled
+     */
+    public boolean isCurrent() {
+        return writer.layout() == source && reader.layout() == target;
+    }
+
+    public Payload decode(byte payload[]) throws DeserializeException {
+        return decode(ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * Decode the payload of the writer descriptor at the current position of the buffer as a payload of the
+     * reader descriptor. On success the position is moved to the end of the payload.
+     * @param buffer buffer positioned at the payload
+     * @return payload of the reader descriptor
+     * @throws DeserializeException if the payload has another id, is malformed or a descriptor changed since
+     * the mapping was compiled
+     */
+    public Payload decode(ByteBuffer buffer) throws DeserializeException {
+        if (!isCurrent()) {
+            throw new DeserializeException("Descriptor " + writer.getId() + " or " + reader.getId()
+                    + " changed since the mapping was compiled");
+        }
+        FieldType types[] = source.types;
+        FieldType targetTypes[] = target.types;
+        int start = buffer.position();
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        try {
+            int id = buffer.getInt();
+            if (id != writer.getId()) {
+                throw new DeserializeException("Payload descriptor id mismatch: " + id + " <> " + writer.getId());
+            }
+            int flagsPosition = buffer.position();
+            buffer.position(flagsPosition + source.nullFlagSize);
+
+            long values[] = defaults.clone();
+            Object objects[] = defaultObjects == null ? null : defaultObjects.clone();
+            byte nullFlags[] = defaultNullFlags.clone();
+            for (int i = 0; i < types.length; i++) {
+                int t = targets[i];
+                if ((buffer.get(flagsPosition + (i >>> 3)) & (1 << (i & 7))) != 0) {
+                    if (t >= 0) nullFlags[t >>> 3] |= 1 << (t & 7);
+                    continue;
+                }
+                switch (ops[i]) {
+                    case OP_SKIP:
+                        int position = buffer.position();
+                        buffer.position(position + types[i].encodedLength(buffer, position));
+                        break;
+                    case OP_LONG:
+                        values[t] = types[i].readLong(buffer);
+                        break;
+                    case OP_WIDEN:
+                        values[t] = narrow(targetTypes[t], types[i].unsignedLong(types[i].readLong(buffer)));
+                        break;
+                    case OP_TO_FLOAT:
+                        values[t] = Double.doubleToRawLongBits((float) toDouble(types[i], types[i].readLong(buffer)));
+                        break;
+                    case OP_TO_DOUBLE:
+                        values[t] = Double.doubleToRawLongBits(toDouble(types[i], types[i].readLong(buffer)));
+                        break;
+                    case OP_FLOATING:
+                        values[t] = Double.doubleToRawLongBits(types[i].readDouble(buffer));
+                        break;
+                    case OP_BOOL:
+                        values[t] = buffer.get() > 0 ? 1 : 0;
+                        break;
+                    default:
+                        if (objects == null) objects = new Object[targetTypes.length];
+                        objects[t] = targetTypes[t].deserialize(buffer);
+                        break;
+                }
+            }
+            return new Payload(reader.getId(), target, values, objects, nullFlags);
+        } catch (DeserializeException e) {
+            buffer.position(start);
+            throw e;
+        } catch (Exception e) {
+            buffer.position(start);
+            throw new DeserializeException(e);
+        } finally {
+            buffer.order(order);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.payload;
+
+import org.mayanjun.pss.DeserializeException;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Reads the payloads written with any version of a type as one version of it. The descriptors of the writer
+ * versions are found in a registry by the id at the head of each payload, and the {@linkplain VersionMapping}
+ * of a writer version is compiled on its first payload and then looked up by version, so the schemas are not
+ * compared again per payload. Payloads of the reader version are deserialized directly.
+ * <p>A reader is thread safe.</p>
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public class VersionedReader {
+
+    private final PayloadDescriptor reader;
+
+    private final PayloadRegistry writers;
+
+    /**
+     * Mappings by writer version
+     */
+    private final AtomicReferenceArray<VersionMapping> mappings =
+            new AtomicReferenceArray<VersionMapping>(1 << (32 - PayloadDescriptor.VERSION_SHIFT));
+
+    /**
+     * @param reader descriptor to read the payloads as
+     * @param writers registry of the descriptors the payloads may have been written with
+     */
+    public VersionedReader(PayloadDescriptor reader, PayloadRegistry writers) {
+        this.reader = reader;
+        this.writers = writers;
+    }
+
+    public PayloadDescriptor getReader() {
+        return reader;
+    }
+
+    public PayloadRegistry getWriters() {
+        return writers;
+    }
+
+    public Payload read(byte payload[]) throws DeserializeException {
+        return read(ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * Read the payload at the current position of the buffer as a payload of the reader descriptor.
+     * On success the position is moved to the end of the payload.
+     * @param buffer big-endian buffer
+     * @return payload of the reader descriptor
+     * @throws DeserializeException if the payload is of another type, its version isn't registered, can't be
+     * mapped to the reader version or is malformed
+     */
+    public Payload read(ByteBuffer buffer) throws DeserializeException {
+        if (buffer.remaining() < 4) throw new DeserializeException("Buffer underflow, no payload id");
+        int id = buffer.getInt(buffer.position());
+        if (id == reader.getId()) return Payloads.deserialize(reader, buffer);
+        return mapping(id).decode(buffer);
+    }
+
+    /**
+     * Return the mapping of the payloads with the id, compiled on the first call
+     * @param id id of the writer descriptor
+     * @return mapping to the reader descriptor
+     * @throws DeserializeException if the id is of another type, isn't registered or can't be mapped
+     */
+    public VersionMapping mapping(int id) throws DeserializeException {
+        if (PayloadDescriptor.typeId(id) != reader.getTypeId()) {
+            throw new DeserializeException("Payload type mismatch: " + PayloadDescriptor.typeId(id) + " <> " + reader.getTypeId());
+        }
+        int version = PayloadDescriptor.version(id);
+        VersionMapping mapping = mappings.get(version);
+        PayloadDescriptor writer = writers.get(id);
+        // the id may have been registered again with another descriptor since the mapping was compiled
+        if (mapping == null || mapping.getWriter() != writer || !mapping.isCurrent()) {
+            if (writer == null) throw new DeserializeException("Unknown payload descriptor id: " + id);
+            try {
+                mapping = VersionMapping.compile(writer, reader);
+            } catch (IllegalArgumentException e) {
+                throw new DeserializeException(e.getMessage(), e);
+            }
+            mappings.set(version, mapping);
+        }
+        return mapping;
+    }
+}
@@ -16,6 +16,8 @@
 
 package org.mayanjun.pss.util;
 
+import java.nio.ByteBuffer;
+
 /**
  * Binary utils
  * @author mayanjun
@@ -70,6 +72,103 @@ public class BinaryUtils {
         return data & 0xFFFFFFFFL;
     }
 
+    /**
+     * Return the number of bytes of a value encoded as unsigned LEB128 varint: 7 bits per byte,
+     * least significant group first, the high bit set on all bytes but the last
+     * @param value value taken as unsigned
+     * @return 1 to 10
+     */
+    public static int varintLength(long value) {
+        int bits = 64 - Long.numberOfLeadingZeros(value | 1);
+        return (bits + 6) / 7;
+    }
+
+    /**
+     * Write a value as unsigned varint at the current position of the buffer
+     * @param buffer buffer
+     * @param value value taken as unsigned
+     */
+    public static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public static byte[] varintToBytes(long value) {
+        byte bytes[] = new byte[varintLength(value)];
+        putVarint(ByteBuffer.wrap(bytes), value);
+        return bytes;
+    }
+
+    /**
+     * Read an unsigned varint at an absolute offset of the buffer
+     * @param buffer buffer
+     * @param index offset of the varint
+     * @return value
+     * @throws IllegalArgumentException if the varint is longer than 10 bytes
+     */
+    public static long getVarint(ByteBuffer buffer, int index) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get(index++);
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Read an unsigned varint at the current position of the buffer and move the position after it
+     * @param buffer buffer
+     * @return value
+     * @throws IllegalArgumentException if the varint is longer than 10 bytes
+     */
+    public static long getVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Return the number of bytes of the varint at an absolute offset of the buffer
+     * @param buffer buffer
+     * @param index offset of the varint
+     * @return 1 to 10
+     * @throws IllegalArgumentException if the varint is longer than 10 bytes
+     */
+    public static int varintSize(ByteBuffer buffer, int index) {
+        for (int i = 0; i < 10; i++) {
+            if (buffer.get(index + i) >= 0) return i + 1;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Map a signed value to an unsigned one so that small negative values have a short varint:
+     * 0, -1, 1, -2... are mapped to 0, 1, 2, 3...
+     */
+    public static long zigzagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long zigzagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static int zigzagEncode(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    public static int zigzagDecode(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
     public static String toMacAddress(byte macBytes[]) {
         StringBuffer sb = new StringBuffer();
         for(int i  = 0; i < macBytes.length; i++) {
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of fixed-size heap or direct buffers. A leased buffer is taken from the slot of the current thread first,
+ * then from a bounded shared pool, and is allocated only when both are empty. A released buffer goes back to the
+ * slot of the releasing thread, or to the shared pool if the slot is taken, and is dropped when the pool is full.
+ * <p>Requests larger than the buffer size are served with a new buffer of the exact size which is never pooled.
+ * A buffer must not be used after it has been released. The pool is thread safe.</p>
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public class BufferPool {
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    public static final int DEFAULT_MAX_POOLED = 64;
+
+    private final int bufferSize;
+
+    private final int maxPooled;
+
+    private final boolean direct;
+
+    private final ThreadLocal<ByteBuffer> local;
+
+    private final Queue<ByteBuffer> shared = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    private final LongAdder leases = new LongAdder();
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder sharedHits = new LongAdder();
+    private final LongAdder allocations = new LongAdder();
+    private final LongAdder releases = new LongAdder();
+    private final LongAdder discards = new LongAdder();
+
+    /**
+     * Create a heap pool of {@value #DEFAULT_BUFFER_SIZE} bytes buffers with thread-local slots
+     */
+    public BufferPool() {
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED, false, true);
+    }
+
+    /**
+     * Create a pool with thread-local slots
+     * @param bufferSize capacity of the pooled buffers
+     * @param maxPooled maximum number of buffers kept in the shared pool
+     * @param direct true to pool direct buffers
+     */
+    public BufferPool(int bufferSize, int maxPooled, boolean direct) {
+        this(bufferSize, maxPooled, direct, true);
+    }
+
+    /**
+     * @param bufferSize capacity of the pooled buffers
+     * @param maxPooled maximum number of buffers kept in the shared pool
+     * @param direct true to pool direct buffers
+     * @param threadLocal true to keep one buffer per thread in addition to the shared pool
+     */
+    public BufferPool(int bufferSize, int maxPooled, boolean direct, boolean threadLocal) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        if (maxPooled < 0) throw new IllegalArgumentException("Invalid max pooled: " + maxPooled);
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+        this.direct = direct;
+        this.local = threadLocal ? new ThreadLocal<ByteBuffer>() : null;
+    }
+
+    /**
+     * Lease a cleared big-endian buffer of at least the given capacity
+     * @param minCapacity minimum capacity
+     * @return buffer, to give back with {@linkplain #release(ByteBuffer)}
+     */
+    public ByteBuffer lease(int minCapacity) {
+        leases.increment();
+        if (minCapacity > bufferSize) {
+            allocations.increment();
+            return allocate(minCapacity);
+        }
+        ByteBuffer buffer;
+        if (local != null && (buffer = local.get()) != null) {
+            local.set(null);
+            localHits.increment();
+            return buffer;
+        }
+        buffer = shared.poll();
+        if (buffer != null) {
+            pooled.decrementAndGet();
+            sharedHits.increment();
+            return buffer;
+        }
+        allocations.increment();
+        return allocate(bufferSize);
+    }
+
+    /**
+     * Give back a leased buffer. Buffers of another size or kind are dropped.
+     * @param buffer buffer, may be null
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null) return;
+        releases.increment();
+        if (buffer.capacity() != bufferSize || buffer.isDirect() != direct || buffer.isReadOnly()) {
+            discards.increment();
+            return;
+        }
+        buffer.clear();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        if (local != null && local.get() == null) {
+            local.set(buffer);
+            return;
+        }
+        if (pooled.incrementAndGet() <= maxPooled) {
+            shared.offer(buffer);
+        } else {
+            pooled.decrementAndGet();
+            discards.increment();
+        }
+    }
+
+    /**
+     * Drop the buffers of the shared pool and of the slot of the current thread
+     */
+    public void clear() {
+        if (local != null) local.remove();
+        while (shared.poll() != null) {
+            pooled.decrementAndGet();
+        }
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getMaxPooled() {
+        return maxPooled;
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    public boolean isThreadLocal() {
+        return local != null;
+    }
+
+    /**
+     * @return number of buffers currently in the shared pool
+     */
+    public int getPooledCount() {
+        return Math.max(pooled.get(), 0);
+    }
+
+    /**
+     * @return number of calls to {@linkplain #lease(int)}
+     */
+    public long getLeaseCount() {
+        return leases.sum();
+    }
+
+    /**
+     * @return number of leases served from the slot of the leasing thread
+     */
+    public long getThreadLocalHitCount() {
+        return localHits.sum();
+    }
+
+    /**
+     * @return number of leases served from the shared pool
+     */
+    public long getSharedHitCount() {
+        return sharedHits.sum();
+    }
+
+    /**
+     * @return number of buffers allocated, including oversized ones
+     */
+    public long getAllocationCount() {
+        return allocations.sum();
+    }
+
+    /**
+     * @return number of calls to {@linkplain #release(ByteBuffer)} with a buffer
+     */
+    public long getReleaseCount() {
+        return releases.sum();
+    }
+
+    /**
+     * @return number of released buffers dropped because the pool was full or they didn't fit
+     */
+    public long getDiscardCount() {
+        return discards.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "BufferPool{bufferSize=" + bufferSize + ", direct=" + direct + ", pooled=" + getPooledCount()
+                + ", leases=" + getLeaseCount() + ", threadLocalHits=" + getThreadLocalHitCount()
+                + ", sharedHits=" + getSharedHitCount() + ", allocations=" + getAllocationCount()
+                + ", releases=" + getReleaseCount() + ", discards=" + getDiscardCount() + "}";
+    }
+}
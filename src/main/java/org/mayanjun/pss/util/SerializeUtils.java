@@ -135,6 +135,42 @@ public class SerializeUtils {
         }
     }
 
+    /**
+     * Encode the int value of a number as varint, zigzag encoded if requested
+     * @param value number
+     * @param zigzag true for ZIGZAG32
+     * @return 1 to 5 bytes
+     * @throws SerializeException
+     */
+    public static byte[] varint32ToBytes(Object value, boolean zigzag) throws SerializeException {
+        if (value == null) return null;
+        if (value instanceof Number) {
+            int i = ((Number) value).intValue();
+            if (zigzag) i = BinaryUtils.zigzagEncode(i);
+            return BinaryUtils.varintToBytes(i & 0xFFFFFFFFL);
+        } else {
+            throw new SerializeException("Can't convert type: " + value.getClass().getCanonicalName() + " ==> to Integer bytes");
+        }
+    }
+
+    /**
+     * Encode the long value of a number as varint, zigzag encoded if requested
+     * @param value number
+     * @param zigzag true for ZIGZAG64
+     * @return 1 to 10 bytes
+     * @throws SerializeException
+     */
+    public static byte[] varint64ToBytes(Object value, boolean zigzag) throws SerializeException {
+        if (value == null) return null;
+        if (value instanceof Number) {
+            long i = ((Number) value).longValue();
+            if (zigzag) i = BinaryUtils.zigzagEncode(i);
+            return BinaryUtils.varintToBytes(i);
+        } else {
+            throw new SerializeException("Can't convert type: " + value.getClass().getCanonicalName() + " ==> to Long bytes");
+        }
+    }
+
     /**
      * 如果长度超出 65533 就截断
      * @param value
@@ -145,9 +181,14 @@ public class SerializeUtils {
         if (value == null) return toLengthBytes(null);
         try {
             if (value instanceof String) {
-                byte bytes[] = value.toString().getBytes("UTF-8");
-                if (bytes.length == 0) return toLengthBytes(null);
-                return toLengthBytes(bytes);
+                String string = (String) value;
+                if (string.isEmpty()) return toLengthBytes(null);
+                int len = Math.min(Utf8.encodedLength(string), MAX_FIELD_LENGTH);
+                byte bytes[] = new byte[len + 2];
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                buffer.putShort((short) len);
+                Utf8.encode(string, buffer, len);
+                return bytes;
             } else {
                 throw new SerializeException("Can't convert type: " + value.getClass().getCanonicalName() + " ==> to String bytes");
             }
@@ -184,14 +225,23 @@ public class SerializeUtils {
         int len = bytes.length;
         if (bytes.length > MAX_FIELD_LENGTH) len = MAX_FIELD_LENGTH;
 
-        byte newBytes[] = new byte[bytes.length + 2];
-        byte [] lenBytes = int16ToBytes(bytes.length);
-        newBytes[0] = lenBytes[0];
-        newBytes[1] = lenBytes[1];
+        byte newBytes[] = new byte[len + 2];
+        newBytes[0] = (byte) ((len >>> 8) & 0xFF);
+        newBytes[1] = (byte) (len & 0xFF);
         System.arraycopy(bytes, 0, newBytes, 2, len);
         return newBytes;
     }
 
+    /**
+     * Return the number of bytes of the UTF-8 encoded string, the same as <code>value.getBytes("UTF-8").length</code>
+     * but without encoding it. Unpaired surrogates count as one byte (the replacement '?').
+     * @param value string
+     * @return encoded length
+     */
+    public static int utf8Length(CharSequence value) {
+        return Utf8.encodedLength(value);
+    }
+
     /**
      *
      * @param buffer
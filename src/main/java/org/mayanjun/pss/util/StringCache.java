@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bounded cache of decoded UTF-8 strings keyed by their raw bytes. Repeated values of a low cardinality field
+ * (host names, status codes, regions...) are decoded once and then returned without any allocation.
+ * <p>The cache is a fixed-size table where each slot holds the last string hashed to it, so memory use is bounded
+ * and a lookup never locks. Strings longer than the maximum length are decoded but not cached.
+ * It is thread safe.</p>
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public class StringCache {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    public static final int DEFAULT_MAX_LENGTH = 64;
+
+    private final Entry entries[];
+
+    private final int mask;
+
+    private final int maxLength;
+
+    public StringCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * @param capacity number of slots, rounded up to a power of 2
+     * @param maxLength length in bytes of the longest string to cache
+     */
+    public StringCache(int capacity, int maxLength) {
+        if (capacity <= 0) throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        this.entries = new Entry[size];
+        this.mask = size - 1;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Return the string of the UTF-8 bytes at an absolute offset of the buffer
+     * @param buffer buffer
+     * @param offset offset of the bytes
+     * @param length number of bytes
+     * @return decoded string, shared with previous calls for the same bytes if still cached
+     */
+    public String get(ByteBuffer buffer, int offset, int length) {
+        if (length == 0) return "";
+        if (length > maxLength) return Utf8.decode(buffer, offset, length);
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer.get(offset + i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        Entry entry = entries[slot];
+        if (entry != null && entry.hash == hash && entry.bytes.length == length) {
+            byte bytes[] = entry.bytes;
+            int i = 0;
+            while (i < length && bytes[i] == buffer.get(offset + i)) {
+                i++;
+            }
+            if (i == length) return entry.value;
+        }
+        byte bytes[] = copy(buffer, offset, length);
+        String value = decode(bytes);
+        entries[slot] = new Entry(hash, bytes, value);
+        return value;
+    }
+
+    public String get(byte bytes[], int offset, int length) {
+        return get(ByteBuffer.wrap(bytes), offset, length);
+    }
+
+    /**
+     * Remove all cached strings
+     */
+    public void clear() {
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = null;
+        }
+    }
+
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    private static byte[] copy(ByteBuffer buffer, int offset, int length) {
+        byte bytes[] = new byte[length];
+        if (buffer.hasArray()) {
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + offset, bytes, 0, length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buffer.get(offset + i);
+            }
+        }
+        return bytes;
+    }
+
+    private static String decode(byte bytes[]) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Immutable, so it can be published through the table without synchronization
+     */
+    private static final class Entry {
+
+        final int hash;
+        final byte bytes[];
+        final String value;
+
+        Entry(int hash, byte bytes[], String value) {
+            this.hash = hash;
+            this.bytes = bytes;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2016-2018 mayanjun.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mayanjun.pss.util;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * UTF-8 encoding and decoding straight between strings and buffers, without the intermediate arrays of
+ * <code>String.getBytes</code> and <code>new String(byte[])</code>.
+ * The encoded bytes are the same as <code>value.getBytes("UTF-8")</code>: unpaired surrogates are written as '?'.
+ * @since 2026-10-18
+ * @author mayanjun
+ */
+public final class Utf8 {
+
+    private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<byte[]>();
+
+    private Utf8() {
+    }
+
+    /**
+     * Return the number of bytes of the UTF-8 encoded string without encoding it
+     * @param value string
+     * @return encoded length
+     */
+    public static int encodedLength(CharSequence value) {
+        int len = value.length();
+        int bytes = len;
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) continue;
+            if (c < 0x800) {
+                bytes += 1;
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    bytes += 2;
+                    i++;
+                }
+            } else {
+                bytes += 2;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Encode a string at the current position of the buffer. If the encoded string is longer than maxBytes only
+     * its first maxBytes bytes are written, the same as truncating the result of <code>getBytes</code>.
+     * @param value string
+     * @param buffer buffer
+     * @param maxBytes maximum number of bytes to write
+     * @return number of bytes written
+     * @throws BufferOverflowException if the buffer is too small
+     */
+    public static int encode(CharSequence value, ByteBuffer buffer, int maxBytes) {
+        int len = value.length();
+        int position = buffer.position();
+        int limit = buffer.limit();
+        int n = 0;
+        int i = 0;
+
+        // ASCII fast path
+        int max = Math.min(len, Math.min(maxBytes, limit - position));
+        if (buffer.hasArray()) {
+            byte array[] = buffer.array();
+            int base = buffer.arrayOffset() + position;
+            for (char c; i < max && (c = value.charAt(i)) < 0x80; i++) {
+                array[base + i] = (byte) c;
+            }
+        } else {
+            for (char c; i < max && (c = value.charAt(i)) < 0x80; i++) {
+                buffer.put(position + i, (byte) c);
+            }
+        }
+        n = i;
+
+        for (; i < len && n < maxBytes; i++) {
+            int cp = value.charAt(i);
+            int bytes;
+            if (cp < 0x80) {
+                bytes = 1;
+            } else if (cp < 0x800) {
+                bytes = 2;
+            } else if (Character.isSurrogate((char) cp)) {
+                if (Character.isHighSurrogate((char) cp) && i + 1 < len && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    cp = Character.toCodePoint((char) cp, value.charAt(++i));
+                    bytes = 4;
+                } else {
+                    cp = '?';
+                    bytes = 1;
+                }
+            } else {
+                bytes = 3;
+            }
+            int count = Math.min(bytes, maxBytes - n);
+            if (position + n + count > limit) throw new BufferOverflowException();
+            for (int j = 0; j < count; j++) {
+                buffer.put(position + n + j, byteAt(cp, bytes, j));
+            }
+            n += count;
+        }
+        buffer.position(position + n);
+        return n;
+    }
+
+    private static byte byteAt(int cp, int bytes, int index) {
+        if (bytes == 1) return (byte) cp;
+        if (index > 0) return (byte) (0x80 | ((cp >>> (6 * (bytes - 1 - index))) & 0x3F));
+        switch (bytes) {
+            case 2:
+                return (byte) (0xC0 | (cp >>> 6));
+            case 3:
+                return (byte) (0xE0 | (cp >>> 12));
+            default:
+                return (byte) (0xF0 | (cp >>> 18));
+        }
+    }
+
+    /**
+     * Decode UTF-8 bytes at an absolute offset of the buffer. Pure ASCII bytes are turned into a string directly;
+     * bytes of a direct buffer are copied to a per-thread scratch array, not to a new one.
+     * @param buffer buffer
+     * @param offset offset of the bytes
+     * @param length number of bytes
+     * @return decoded string
+     */
+    @SuppressWarnings("deprecation")
+    public static String decode(ByteBuffer buffer, int offset, int length) {
+        if (length == 0) return "";
+        if (buffer.hasArray()) {
+            byte array[] = buffer.array();
+            int start = buffer.arrayOffset() + offset;
+            int bits = 0;
+            for (int i = start, end = start + length; i < end; i++) {
+                bits |= array[i];
+            }
+            if (bits >= 0) return new String(array, 0, start, length);
+            return new String(array, start, length, StandardCharsets.UTF_8);
+        }
+        byte scratch[] = scratch(length);
+        int bits = 0;
+        for (int i = 0; i < length; i++) {
+            byte b = buffer.get(offset + i);
+            scratch[i] = b;
+            bits |= b;
+        }
+        if (bits >= 0) return new String(scratch, 0, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] scratch(int length) {
+        byte scratch[] = SCRATCH.get();
+        if (scratch == null || scratch.length < length) {
+            scratch = new byte[Math.max(length, 256)];
+            SCRATCH.set(scratch);
+        }
+        return scratch;
+    }
+}